@@ -15,16 +15,22 @@
  */
 package ar.com.rjgodoy.webhook_router;
 
+import ar.com.rjgodoy.webhook_router.filter.CircuitBreaker;
 import ar.com.rjgodoy.webhook_router.filter.Configuration;
 import ar.com.rjgodoy.webhook_router.filter.DirectiveParser;
-import ar.com.rjgodoy.webhook_router.filter.ExitActionException;
+import ar.com.rjgodoy.webhook_router.filter.HttpClients;
 import java.io.File;
 import java.io.IOException;
-import java.nio.BufferOverflowException;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -38,35 +44,48 @@ import org.json.JSONObject;
 public class App
 {
 
-  private static String next(byte data[], int pos[]) {
-    int count = 0;
-    int i = pos[0];
-    int offset = i;
-    while (i < data.length) {
-      switch (data[i++]) {
-        case '\r':
-          continue;
-        case '\n':
-          if (++count == 2) {
-            pos[0] = i;
-            return new String(data, offset, i - 2 - offset);
-          } else {
-            break;
-          }
-        default:
-          count = 0;
-      }
-
-    }
-    throw new BufferOverflowException();
-  }
-
-
   public static void main(String[] args) throws IOException {
     Options options = new Options();
 
     options.addOption(null, "config", true, "set the path of the configuration file");
     options.addOption(null, "hook", true, "process a directory or file");
+    options.addOption(null, "spool", true, "set the path of the spool directory");
+    options.addOption(null, "daemon", false, "keep running and watch the spool directory");
+    options.addOption(null, "listen", true,
+        "receive webhooks over HTTP at [host:]port and write them into the spool"
+            + " (requires --daemon)");
+    options.addOption(null, "listen-unix", true,
+        "receive framed webhooks over a Unix domain socket at the given path and write them into"
+            + " the spool (requires --daemon)");
+    options.addOption(null, "spool-format", true,
+        "set how jobs are stored in the spool: files, segments or memory (default: files)");
+    options.addOption(null, "durability", true,
+        "set how new jobs are forced to disk: none, sync or group (default: none)");
+    options.addOption(null, "group-commit-interval", true,
+        "set the maximum number of milliseconds that a job waits for a group commit (default: "
+            + SpoolManager.DEFAULT_GROUP_INTERVAL + ")");
+    options.addOption(null, "group-commit-size", true,
+        "set the number of jobs after which a group is committed without waiting (default: "
+            + SpoolManager.DEFAULT_GROUP_SIZE + ")");
+    options.addOption(null, "lanes", true,
+        "set the number of concurrent lanes of an ordered queue (default: "
+            + WorkerScheduler.DEFAULT_LANES + ")");
+    options.addOption(null, "http-pool-size", true,
+        "set the maximum number of idle HTTP connections kept alive per destination"
+            + " (default: unlimited)");
+    options.addOption(null, "http-idle-timeout", true,
+        "set the number of seconds after which an idle HTTP connection is closed");
+    options.addOption(null, "async", false,
+        "send HTTP requests without waiting for the response, unless INTO is used");
+    options.addOption(null, "max-in-flight", true,
+        "set the maximum number of asynchronous HTTP requests per destination host (default: "
+            + HttpClients.DEFAULT_MAX_IN_FLIGHT + ")");
+    options.addOption(null, "circuit-threshold", true,
+        "set the number of consecutive failures that stop the requests to a destination"
+            + " (default: " + CircuitBreaker.DEFAULT_THRESHOLD + ")");
+    options.addOption(null, "circuit-cooldown", true,
+        "set the number of seconds before a stopped destination is probed again (default: "
+            + CircuitBreaker.DEFAULT_COOLDOWN.toSeconds() + ")");
     options.addOption(null, "dry", false, "force a dry run");
 
     CommandLineParser parser = new DefaultParser();
@@ -103,84 +122,195 @@ public class App
       return;
     }
 
-    File directory = new File(command.getOptionValue("spool"));
-    SpoolManager spool = new SpoolManager(directory);
+    if (command.hasOption("http-pool-size") || command.hasOption("http-idle-timeout")) {
+      int poolSize = Integer.parseInt(command.getOptionValue("http-pool-size", "0"));
+      Duration idleTimeout = null;
+      if (command.hasOption("http-idle-timeout")) {
+        String seconds = command.getOptionValue("http-idle-timeout");
+        idleTimeout = Duration.ofSeconds(Long.parseLong(seconds));
+      }
+      HttpClients.configure(poolSize, idleTimeout);
+    }
 
-    for (File file : directory.listFiles()) {
-        if (FilenameUtils.getExtension(file.getName()).isEmpty()) {
-          spool.enqueue(file);
-        }
+    if (command.hasOption("circuit-threshold") || command.hasOption("circuit-cooldown")) {
+      int threshold = command.hasOption("circuit-threshold")
+          ? Integer.parseInt(command.getOptionValue("circuit-threshold"))
+          : CircuitBreaker.DEFAULT_THRESHOLD;
+      Duration cooldown = command.hasOption("circuit-cooldown")
+          ? Duration.ofSeconds(Long.parseLong(command.getOptionValue("circuit-cooldown")))
+          : CircuitBreaker.DEFAULT_COOLDOWN;
+      CircuitBreaker.configure(threshold, cooldown);
     }
 
-    List<String> index = spool.readIndex();
+    if (command.hasOption("max-in-flight")) {
+      HttpClients.limitInFlight(Integer.parseInt(command.getOptionValue("max-in-flight")));
+    }
+
+    File directory = new File(command.getOptionValue("spool"));
+    SpoolManager.Durability durability = SpoolManager.Durability
+        .valueOf(command.getOptionValue("durability", "none").toUpperCase(Locale.ROOT));
+    long groupInterval = Long.parseLong(command.getOptionValue("group-commit-interval",
+        String.valueOf(SpoolManager.DEFAULT_GROUP_INTERVAL)));
+    int groupSize = Integer.parseInt(command.getOptionValue("group-commit-size",
+        String.valueOf(SpoolManager.DEFAULT_GROUP_SIZE)));
+    SpoolStore spool;
+    switch (command.getOptionValue("spool-format", "files")) {
+      case "files":
+        spool = new SpoolManager(directory, durability, groupInterval, groupSize);
+        break;
+      case "segments":
+        spool = new SegmentSpool(directory, durability, groupInterval, groupSize);
+        break;
+      case "memory":
+        spool = new MemorySpool(directory);
+        break;
+      default:
+        System.err.println("Unknown spool format: " + command.getOptionValue("spool-format"));
+        System.exit(1);
+        return;
+    }
+    if (!dry) {
+      // the jobs that were being processed when the previous process stopped
+      spool.recover();
+    }
 
     Context context = new Context(spool, config);
-    for (String queue : spool.getAllQueues()) {
-      for (File file : SpoolManager.sort(spool.discoverPending(queue), index)) {
-        process(file, queue, context, dry);
+    if (command.hasOption("async")) {
+      context.async();
+    }
+
+    int lanes = WorkerScheduler.DEFAULT_LANES;
+    if (command.hasOption("lanes")) {
+      lanes = Integer.parseInt(command.getOptionValue("lanes"));
+    }
+
+    if ((command.hasOption("listen") || command.hasOption("listen-unix"))
+        && !command.hasOption("daemon")) {
+      System.err.println("--listen and --listen-unix require --daemon");
+      System.exit(1);
+      return;
+    }
+
+    try (WorkerScheduler scheduler = new WorkerScheduler(spool, context, dry, lanes)) {
+      if (command.hasOption("daemon")) {
+        Ingress ingress = command.hasOption("listen")
+            ? new Ingress(spool, scheduler, Ingress.parseAddress(command.getOptionValue("listen")))
+            : null;
+        try (ingress) {
+          SocketIngress socket = command.hasOption("listen-unix")
+              ? new SocketIngress(scheduler, Path.of(command.getOptionValue("listen-unix")))
+              : null;
+          try (socket) {
+            daemon(spool, scheduler);
+          }
+        }
+      } else {
+        enqueueAll(spool);
+        scheduler.schedule();
+        scheduler.awaitIdle();
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
 
   }
 
+  /** The interval between retention sweeps while the daemon is idle, in minutes. */
+  private static final int SWEEP_INTERVAL = 1;
 
-  private static boolean process(File file, String queueName, Context context, boolean dry) {
-    WebHook webhook = parseWebHook(context, file);
-    if (webhook != null) {
-      try {
-        context.getRules().call(queueName, webhook);
-      } catch (ExitActionException e) {
-        // done
-      }
-      if (!dry && webhook.context.isConsumed()) {
-        file.delete();
+  /**
+   * Watches the spool root and schedules new webhooks as they arrive, without leaving the
+   * process. The configuration is parsed only once.
+   */
+  private static void daemon(SpoolStore spool, WorkerScheduler scheduler)
+      throws IOException, InterruptedException {
+    try (WatchService watcher = spool.getRoot().getFileSystem().newWatchService()) {
+      spool.getRoot().register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+
+      // files that were moved into the spool before the watcher was registered
+      enqueueAll(spool);
+      scheduler.schedule();
+
+      while (true) {
+        WatchKey key = watcher.poll(SWEEP_INTERVAL, TimeUnit.MINUTES);
+        if (key == null) {
+          // policies based on age must be enforced even if no webhooks arrive
+          scheduler.sweep();
+          continue;
+        }
+        do {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              enqueueAll(spool);
+            } else {
+              Path path = spool.getRoot().resolve((Path) event.context());
+              enqueue(spool, path.toFile());
+            }
+          }
+          if (!key.reset()) {
+            System.err.println("(" + spool.getRoot() + ") Spool directory is no longer accessible");
+            return;
+          }
+        } while ((key = watcher.poll()) != null);
+        scheduler.schedule();
       }
-      return true;
-    } else {
-      return false;
     }
   }
 
-  private static WebHook parseWebHook(Context context, File file) {
-    byte data[];
-    try {
-      data = FileUtils.readFileToByteArray(file);
-    } catch (IOException e) {
-      System.err.println("(" + file + ") " + e.getMessage());
-      return null;
+  private static void enqueueAll(SpoolStore spool) throws IOException {
+    for (File file : spool.getRoot().toFile().listFiles()) {
+      enqueue(spool, file);
+    }
+  }
+
+  private static void enqueue(SpoolStore spool, File file) throws IOException {
+    if (file.isFile() && FilenameUtils.getExtension(file.getName()).isEmpty()) {
+      spool.enqueue(file);
     }
+  }
 
-    int pos[] = new int[1];
+  /**
+   * Reads a webhook from a spool file.
+   *
+   * @param data the contents of the job.
+   * @param parsePayload whether to parse the payload now, rather than on first access.
+   * @return the webhook, or {@code null} if the file could not be read.
+   */
+  static WebHook parseWebHook(Context context, File file, byte[] data, boolean parsePayload) {
+    SpoolFileReader reader = new SpoolFileReader(data);
 
-    String requestUri, payload;
-    List<Header> headers;
+    String requestUri;
+    HeaderMap headers;
 
     try {
-      requestUri = next(data, pos);
-      headers = Stream.of(next(data, pos).split("\n")).map(Header::new).toList();
-      payload = new String(data, pos[0], data.length - pos[0]);
+      requestUri = reader.readRequestUri();
+      headers = reader.readHeaders();
     } catch (Exception e) {
       System.err.println("(" + file + ") Malformed file: " + e);
       return null;
     }
 
-    String contentType =
-        headers.stream().filter(Header.is("Content-Type")).findFirst().get().value();
-    if (contentType.equals("application/json")) {
+    String contentType = headers.getValue("Content-Type");
+    if (!"application/json".equals(contentType)) {
+      System.err.println("(" + file + ") Content type not allowed: " + contentType);
+      return null;
+    }
+
+    WebHook webhook;
+    if (parsePayload) {
       JSONObject jsonObject;
       try {
-        jsonObject = new JSONObject(payload);
+        jsonObject = reader.readPayload();
       } catch (JSONException e) {
         System.err.println("(" + file + ") Failed to parse payload: " + e.getMessage());
         return null;
       }
-      headers = new ArrayList<>(headers);
-      return new WebHook(requestUri, headers, jsonObject, file, new Context(context));
+      webhook = new WebHook(requestUri, headers, jsonObject, file, new Context(context));
     } else {
-      System.err.println("(" + file + ") Content type not allowed: contentType");
-      return null;
+      webhook = new WebHook(requestUri, headers, reader::readPayload, file, new Context(context));
     }
-
+    webhook.setOriginalPayload(data, reader.getPayloadOffset(), reader.getPayloadLength());
+    return webhook;
   }
 
   private static Configuration parseDirectives(String path) throws IOException {
@@ -19,11 +19,15 @@ import ar.com.rjgodoy.webhook_router.filter.Configuration;
 import ar.com.rjgodoy.webhook_router.filter.Directive;
 import ar.com.rjgodoy.webhook_router.filter.ProcedureDecl;
 import ar.com.rjgodoy.webhook_router.filter.Result;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Stream;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -40,19 +44,27 @@ public class Context {
 
   private final Set<String> secrets = new HashSet<>();
 
+  private volatile SecretMasker masker = SecretMasker.EMPTY;
+
   @Getter
   private Configuration rules;
 
   @Getter
-  private boolean consumed;
+  private volatile boolean consumed;
 
   @Getter
   private boolean dry;
 
+  @Getter
+  private boolean async;
+
+  /** The requests that were sent asynchronously while evaluating the rules. */
+  private final List<CompletableFuture<?>> deferred = new ArrayList<>();
+
   private List<ProcedureDecl> procedures = new ArrayList<>();
-  private final SpoolManager spool;
+  private final SpoolStore spool;
 
-  Context(SpoolManager spool, Configuration rules) {
+  Context(SpoolStore spool, Configuration rules) {
     parent = null;
     this.spool = spool;
     this.rules = rules;
@@ -62,9 +74,10 @@ public class Context {
     this.parent = parent;
     spool = parent.spool;
     dry = parent.dry;
+    async = parent.async;
     consumed = parent.consumed;
     rules = parent.rules;
-    procedures = parent.procedures;
+    procedures = new ArrayList<>(parent.procedures);
   }
 
   public void consume() {
@@ -75,6 +88,36 @@ public class Context {
     dry = true;
   }
 
+  /**
+   * Allows the HTTP actions to send their requests without waiting for the response.
+   */
+  public void async() {
+    async = true;
+  }
+
+  /**
+   * Registers an asynchronous request. The request may {@linkplain #consume() consume} the
+   * webhook when it completes.
+   */
+  public void defer(CompletableFuture<?> future) {
+    deferred.add(future);
+  }
+
+  /**
+   * Waits until all the asynchronous requests have completed, so that {@link #isConsumed()}
+   * reflects their outcome.
+   */
+  public void awaitDeferred() {
+    for (CompletableFuture<?> future : deferred) {
+      try {
+        future.join();
+      } catch (CompletionException | CancellationException e) {
+        System.err.println(e.getCause() != null ? e.getCause() : e);
+      }
+    }
+    deferred.clear();
+  }
+
   public void set(String name, Object value) {
     variables.put(name, value);
   }
@@ -101,21 +144,26 @@ public class Context {
   }
 
   public Object get(String name) {
-    String ss[] = name.split("\\.");
+    return get(name.split("\\."));
+  }
 
+  /**
+   * Returns the value of a variable, given the segments of its path.
+   */
+  Object get(String[] path) {
     JSONObject obj = variables;
-    int n = ss.length - 1;
+    int n = path.length - 1;
     for (int i = 0; i < n; i++) {
-      if (!obj.has(ss[i])) {
-        return parent != null ? parent.get(name) : null;
+      if (!obj.has(path[i])) {
+        return parent != null ? parent.get(path) : null;
       }
-      obj = obj.getJSONObject(ss[i]);
+      obj = obj.getJSONObject(path[i]);
     }
 
-    if (!obj.has(ss[n])) {
-      return parent != null ? parent.get(name) : null;
+    if (!obj.has(path[n])) {
+      return parent != null ? parent.get(path) : null;
     } else {
-      return obj.get(ss[n]);
+      return obj.get(path[n]);
     }
   }
 
@@ -145,6 +193,24 @@ public class Context {
     return stream;
   }
 
+  /** Returns the number of secrets added to this context and its ancestors. */
+  private int getSecretCount() {
+    return parent != null ? secrets.size() + parent.getSecretCount() : secrets.size();
+  }
+
+  /**
+   * Replaces the occurrences of the secrets of this context and its ancestors with {@code ***}.
+   */
+  public String mask(String s) {
+    // secrets are never removed, so the count changes whenever a secret is added
+    int count = getSecretCount();
+    SecretMasker masker = this.masker;
+    if (masker.stamp != count) {
+      this.masker = masker = new SecretMasker(getSecrets().distinct().toList(), count);
+    }
+    return masker.mask(s);
+  }
+
   public void declare(ProcedureDecl proc) {
     procedures.add(proc);
   }
@@ -163,8 +229,13 @@ public class Context {
     return Optional.empty();
   }
 
-  public void fanOut(String sourceQueueName, String fileName, String targetQueueName) {
-    spool.fanOut(sourceQueueName, fileName, targetQueueName);
+  public boolean fanOut(String sourceQueueName, String fileName, String targetQueueName) {
+    try {
+      return spool.fanOut(sourceQueueName, fileName, targetQueueName);
+    } catch (IOException e) {
+      System.err.println("(" + fileName + ") " + e.getMessage());
+      return false;
+    }
   }
 
 }
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forces the writes of several jobs to disk at once. Each caller of {@link #commit} blocks until
+ * a background thread has flushed the store and forced the files and directories of the batch,
+ * which happens when the batch reaches a number of jobs or after an interval since its first job,
+ * whichever comes first.
+ */
+final class GroupCommit {
+
+  /** Flushes (and forces) the buffered writes of the store. */
+  private final Flushable store;
+
+  private final long intervalNanos;
+
+  private final int maxJobs;
+
+  private Batch batch = new Batch();
+
+  private Thread flusher;
+
+  private static final class Batch {
+    final Set<Path> files = new LinkedHashSet<>();
+    final Set<Path> directories = new LinkedHashSet<>();
+    int count;
+    boolean done;
+    IOException error;
+  }
+
+  GroupCommit(Flushable store, long intervalMillis, int maxJobs) {
+    if (intervalMillis < 0 || maxJobs < 1) {
+      throw new IllegalArgumentException();
+    }
+    this.store = store;
+    intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    this.maxJobs = maxJobs;
+  }
+
+  /**
+   * Adds a job to the current batch, and waits until the batch has been forced to disk.
+   *
+   * @param files The files that must be forced to disk.
+   * @param directories The directories whose entries must be forced to disk.
+   * @throws IOException if the batch could not be forced to disk.
+   */
+  synchronized void commit(Collection<Path> files, Collection<Path> directories)
+      throws IOException {
+    if (flusher == null) {
+      flusher = new Thread(this::run, "spool-group-commit");
+      flusher.setDaemon(true);
+      flusher.start();
+    }
+
+    Batch current = batch;
+    current.files.addAll(files);
+    current.directories.addAll(directories);
+    if (++current.count == 1 || current.count >= maxJobs) {
+      notifyAll();
+    }
+
+    try {
+      while (!current.done) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for group commit");
+    }
+    if (current.error != null) {
+      throw new IOException("Group commit failed", current.error);
+    }
+  }
+
+  private void run() {
+    while (true) {
+      Batch current;
+      synchronized (this) {
+        try {
+          while (batch.count == 0) {
+            wait();
+          }
+          long deadline = System.nanoTime() + intervalNanos;
+          long remaining;
+          while (batch.count < maxJobs && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        current = batch;
+        batch = new Batch();
+      }
+
+      try {
+        store.flush();
+        for (Path file : current.files) {
+          SpoolManager.forceFile(file);
+        }
+        for (Path directory : current.directories) {
+          SpoolManager.forceDirectory(directory);
+        }
+      } catch (IOException e) {
+        current.error = e;
+      }
+
+      synchronized (this) {
+        current.done = true;
+        notifyAll();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * The headers of a webhook, in order of insertion.
+ * <p>
+ * Repeated names are allowed. Lookups by name are case-insensitive and take constant time: an
+ * open-addressing table, hashed over the case-folded name, maps each name to its first header.
+ * The map is also a {@link java.util.List} of headers, which can be iterated for forwarding.
+ */
+public final class HeaderMap extends AbstractList<Header> implements RandomAccess {
+
+  private Header[] entries;
+
+  private int size;
+
+  /** The position plus one of the first header with each name, or 0 for an empty slot. */
+  private int[] table;
+
+  /** Incremented whenever a header is added or its value is set. */
+  private int version;
+
+  public HeaderMap() {
+    entries = new Header[8];
+    table = new int[16];
+  }
+
+  public HeaderMap(Collection<Header> headers) {
+    this();
+    headers.forEach(this::add);
+  }
+
+  /** Returns a deep copy of this map. */
+  public HeaderMap copy() {
+    HeaderMap copy = new HeaderMap();
+    forEach(header -> copy.add(new Header(header)));
+    return copy;
+  }
+
+  @Override
+  public Header get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return entries[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean add(Header header) {
+    if (size == entries.length) {
+      entries = Arrays.copyOf(entries, size * 2);
+    }
+    entries[size++] = header;
+    if (size * 2 > table.length) {
+      rehash();
+    } else {
+      insert(size - 1);
+    }
+    modCount++;
+    version++;
+    return true;
+  }
+
+  /**
+   * Returns a counter that changes whenever a header is added or its value is set, so that
+   * callers can tell whether the headers were written.
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /** Returns the first header with the given name, or {@code null}. */
+  public Header getFirst(String name) {
+    int mask = table.length - 1;
+    for (int i = hash(name) & mask; table[i] != 0; i = (i + 1) & mask) {
+      Header header = entries[table[i] - 1];
+      if (header.name().equalsIgnoreCase(name)) {
+        return header;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the value of the first header with the given name, or {@code null}. */
+  public String getValue(String name) {
+    Header header = getFirst(name);
+    return header != null ? header.value() : null;
+  }
+
+  /**
+   * Sets the value of the first header with the given name, or adds a header if there is none.
+   */
+  public void setValue(String name, String value) {
+    Header header = getFirst(name);
+    if (header != null) {
+      header.value(value);
+      version++;
+    } else {
+      add(new Header(name, value));
+    }
+  }
+
+  private void insert(int index) {
+    String name = entries[index].name();
+    int mask = table.length - 1;
+    int i = hash(name) & mask;
+    for (; table[i] != 0; i = (i + 1) & mask) {
+      if (entries[table[i] - 1].name().equalsIgnoreCase(name)) {
+        // a header with the same name was added before
+        return;
+      }
+    }
+    table[i] = index + 1;
+  }
+
+  private void rehash() {
+    table = new int[table.length * 2];
+    for (int i = 0; i < size; i++) {
+      insert(i);
+    }
+  }
+
+  // consistent with String.equalsIgnoreCase
+  private static int hash(String name) {
+    int h = 0;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c < 0x80) {
+        if (c >= 'A' && c <= 'Z') {
+          c += 'a' - 'A';
+        }
+      } else {
+        c = Character.toLowerCase(Character.toUpperCase(c));
+      }
+      h = 31 * h + c;
+    }
+    return h ^ (h >>> 16);
+  }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives webhooks over HTTP and writes them into the spool, in the same format as the external
+ * proxy.
+ * <p>
+ * Since the webhook is written straight into the default queue and handed to the scheduler along
+ * with its contents, it is neither picked up by the watcher nor read back from the spool.
+ */
+final class Ingress implements AutoCloseable {
+
+  /** Headers that only apply to the connection with the sender, and are not written. */
+  private static final Set<String> HOP_BY_HOP_HEADERS = Set.of("connection", "expect",
+      "keep-alive", "proxy-connection", "te", "trailer", "transfer-encoding", "upgrade");
+
+  private final SpoolStore spool;
+
+  private final WorkerScheduler scheduler;
+
+  private final HttpServer server;
+
+  private final ExecutorService executor;
+
+  Ingress(SpoolStore spool, WorkerScheduler scheduler, InetSocketAddress address)
+      throws IOException {
+    this.spool = spool;
+    this.scheduler = scheduler;
+    executor = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "ingress");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server = HttpServer.create(address, 0);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  /**
+   * Returns the address the server is bound to.
+   */
+  InetSocketAddress getAddress() {
+    return server.getAddress();
+  }
+
+  /**
+   * Parses a listen address of the form {@code [host:]port}.
+   */
+  static InetSocketAddress parseAddress(String address) {
+    int i = address.lastIndexOf(':');
+    int port = Integer.parseInt(address.substring(i + 1));
+    if (i < 0) {
+      return new InetSocketAddress(port);
+    } else {
+      return new InetSocketAddress(address.substring(0, i), port);
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+
+      // reject what would be discarded when the webhook is parsed, before it is written
+      String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+      if (!"application/json".equals(contentType)) {
+        reject(exchange, 415);
+        return;
+      }
+
+      String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+      if (contentLength != null && isTooLong(contentLength)) {
+        reject(exchange, 413);
+        return;
+      }
+
+      byte[] payload;
+      try (InputStream in = exchange.getRequestBody()) {
+        payload = in.readNBytes(SocketIngress.MAX_FRAME_LENGTH + 1);
+      }
+      if (payload.length > SocketIngress.MAX_FRAME_LENGTH) {
+        reject(exchange, 413);
+        return;
+      }
+
+      byte[] data = format(exchange, payload);
+      int status;
+      try {
+        status = scheduler.receive(data) != null ? 202 : 409;
+      } catch (IOException e) {
+        System.err.println("(" + spool.getRoot() + ") " + e.getMessage());
+        status = 500;
+      }
+      exchange.sendResponseHeaders(status, -1);
+    }
+  }
+
+  // the body may not have been read, so the connection cannot be reused
+  private static void reject(HttpExchange exchange, int status) throws IOException {
+    exchange.getResponseHeaders().set("Connection", "close");
+    exchange.sendResponseHeaders(status, -1);
+  }
+
+  private static boolean isTooLong(String contentLength) {
+    try {
+      return Long.parseLong(contentLength.trim()) > SocketIngress.MAX_FRAME_LENGTH;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Formats a request as a spool file: the request URI, the headers and the payload, separated by
+   * blank lines. Hop-by-hop headers are not written, since they cannot be forwarded.
+   */
+  private static byte[] format(HttpExchange exchange, byte[] payload) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(exchange.getRequestURI()).append("\n\n");
+    for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+      if (HOP_BY_HOP_HEADERS.contains(header.getKey().toLowerCase())) {
+        continue;
+      }
+      for (String value : header.getValue()) {
+        sb.append(header.getKey()).append(": ").append(value).append('\n');
+      }
+    }
+    sb.append('\n');
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.writeBytes(sb.toString().getBytes(StandardCharsets.UTF_8));
+    out.writeBytes(payload);
+    return out.toByteArray();
+  }
+
+  @Override
+  public void close() {
+    server.stop(1);
+    executor.shutdown();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
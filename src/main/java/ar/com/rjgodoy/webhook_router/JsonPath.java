@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import java.util.Arrays;
+import lombok.EqualsAndHashCode;
+import org.json.JSONObject;
+
+/**
+ * A precompiled path expression, such as {@code $a.b.c} (an element of the payload),
+ * {@code %x.y} (a context variable) or {@code X-GitHub-Event} (a request header).
+ * <p>
+ * The expression is split once, so that resolving the path only walks the JSON tree.
+ */
+@EqualsAndHashCode(of = "expression")
+public final class JsonPath {
+
+  enum Scope {
+    PAYLOAD, CONTEXT, HEADER
+  }
+
+  private final String expression;
+
+  final Scope scope;
+
+  /** The segments of the path, or the name of the header. */
+  final String[] segments;
+
+  private JsonPath(String expression, Scope scope, String[] segments) {
+    this.expression = expression;
+    this.scope = scope;
+    this.segments = segments;
+  }
+
+  /**
+   * Compiles a path expression. Expressions that start with {@code $} are resolved against the
+   * payload, expressions that start with {@code %} are resolved against the context, and other
+   * expressions are resolved as the name of a header.
+   */
+  public static JsonPath compile(String expression) {
+    switch (expression.charAt(0)) {
+      case '$':
+        return new JsonPath(expression, Scope.PAYLOAD, expression.substring(1).split("\\."));
+      case '%':
+        return new JsonPath(expression, Scope.CONTEXT, expression.substring(1).split("\\."));
+      default:
+        return new JsonPath(expression, Scope.HEADER, new String[] {expression});
+    }
+  }
+
+  /**
+   * Returns whether the path resolves against the context.
+   */
+  public boolean isContext() {
+    return scope == Scope.CONTEXT;
+  }
+
+  /**
+   * Returns whether the path has more than one segment.
+   */
+  public boolean isNested() {
+    return segments.length > 1;
+  }
+
+  /**
+   * Returns the first segment of the path.
+   */
+  public String getRootSegment() {
+    return segments[0];
+  }
+
+  /**
+   * Returns the last segment of the path.
+   */
+  public String getLastSegment() {
+    return segments[segments.length - 1];
+  }
+
+  /**
+   * Returns the path of the object that contains the last segment of this path.
+   *
+   * @throws IllegalStateException if the path is not nested.
+   */
+  public JsonPath getParent() {
+    if (!isNested()) {
+      throw new IllegalStateException("Path is not nested: " + expression);
+    }
+    int pos = expression.lastIndexOf('.');
+    return new JsonPath(expression.substring(0, pos), scope,
+        Arrays.copyOf(segments, segments.length - 1));
+  }
+
+  /**
+   * Resolves the path against the given webhook.
+   *
+   * @return the resolved value, or {@code null} if the path is not present.
+   */
+  public Object resolve(WebHook webhook) {
+    return webhook.resolve(this);
+  }
+
+  /**
+   * Walks the segments of the path from the given object.
+   */
+  Object walk(JSONObject obj) {
+    int n = segments.length - 1;
+    for (int i = 0; i < n; i++) {
+      if (!obj.has(segments[i])) {
+        return null;
+      }
+      obj = obj.getJSONObject(segments[i]);
+    }
+    return obj.opt(segments[n]);
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+}
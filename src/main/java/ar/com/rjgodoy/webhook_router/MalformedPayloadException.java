@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import org.json.JSONException;
+
+/**
+ * Thrown when a payload that is parsed lazily turns out not to be a valid JSON object.
+ */
+public final class MalformedPayloadException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  MalformedPayloadException(JSONException cause) {
+    super("Failed to parse payload: " + cause.getMessage(), cause);
+  }
+
+}
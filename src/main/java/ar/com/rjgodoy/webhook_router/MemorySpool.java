@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static ar.com.rjgodoy.webhook_router.filter.Configuration.DEFAULT_QUEUE;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A spool that keeps the jobs in memory, for benchmarks, tests and ephemeral deployments. The
+ * jobs are lost when the process exits.
+ * <p>
+ * The queues are concurrent maps, and the transitions of a job are compare-and-set operations on
+ * its state, so that no lock is held across operations. Fanned-out jobs share their contents.
+ * Webhook files that are moved into the spool root are still enqueued, and deleted once they have
+ * been read into memory.
+ */
+public final class MemorySpool implements SpoolStore {
+
+  private final Path root;
+
+  private final ConcurrentMap<String, ConcurrentMap<String, Job>> queues =
+      new ConcurrentHashMap<>();
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  private record Status(State state, long time) {}
+
+  /** The status of a job that was deleted, but may not have been removed from its queue yet. */
+  private static final Status DELETED = new Status(null, 0);
+
+  private static final class Job {
+    final String name;
+    final byte[] data;
+    final long sequence;
+    final AtomicReference<Status> status;
+
+    Job(String name, byte[] data, long sequence) {
+      this.name = name;
+      this.data = data;
+      this.sequence = sequence;
+      status = new AtomicReference<>(new Status(State.PENDING, System.currentTimeMillis()));
+    }
+  }
+
+  /**
+   * Creates a new in-memory spool.
+   *
+   * @param root The directory that is watched for new webhook files. Jobs are never written into
+   *        it.
+   * @throws NullPointerException if root is null.
+   */
+  public MemorySpool(File root) {
+    this.root = Objects.requireNonNull(root, "Spool root file cannot be null.").toPath();
+  }
+
+  private ConcurrentMap<String, Job> getQueue(String queueName) {
+    return queues.computeIfAbsent(queueName, name -> new ConcurrentHashMap<>());
+  }
+
+  private Job get(String queueName, State state, String fileName) {
+    ConcurrentMap<String, Job> queue = queues.get(queueName);
+    Job job = queue == null ? null : queue.get(fileName);
+    return job != null && job.status.get().state == state ? job : null;
+  }
+
+  private boolean transition(String queueName, String fileName, State from, State to) {
+    ConcurrentMap<String, Job> queue = queues.get(queueName);
+    Job job = queue == null ? null : queue.get(fileName);
+    return job != null && transition(job, from, to);
+  }
+
+  private static boolean transition(Job job, State from, State to) {
+    Status status;
+    do {
+      status = job.status.get();
+      if (status.state != from) {
+        return false;
+      }
+    } while (!job.status.compareAndSet(status, new Status(to, System.currentTimeMillis())));
+    return true;
+  }
+
+  @Override
+  public Path getRoot() {
+    return root;
+  }
+
+  /**
+   * Enqueues a webhook file from the spool root, by reading it into memory. The file is deleted
+   * once it has been enqueued.
+   */
+  @Override
+  public boolean enqueue(File sourceFile) throws IOException {
+    if (!sourceFile.exists() || !sourceFile.isFile()) {
+      throw new FileNotFoundException(
+          "Source file not found or is not a regular file: " + sourceFile.getAbsolutePath());
+    }
+    if (!write(sourceFile.getName(), Files.readAllBytes(sourceFile.toPath()))) {
+      return false;
+    }
+    Files.delete(sourceFile.toPath());
+    return true;
+  }
+
+  /**
+   * Enqueues a new job with the given contents. The array is retained, and must not be modified
+   * afterwards.
+   */
+  @Override
+  public boolean write(String fileName, byte[] data) {
+    Job job = new Job(fileName, data, sequence.getAndIncrement());
+    return getQueue(DEFAULT_QUEUE).putIfAbsent(fileName, job) == null;
+  }
+
+  @Override
+  public boolean claim(String queueName, String fileName) {
+    return transition(queueName, fileName, State.PENDING, State.PROCESSING);
+  }
+
+  @Override
+  public boolean complete(String queueName, String fileName) {
+    return transition(queueName, fileName, State.PROCESSING, State.PROCESSED);
+  }
+
+  @Override
+  public boolean fail(String queueName, String fileName) {
+    return transition(queueName, fileName, State.PROCESSING, State.FAILED);
+  }
+
+  @Override
+  public int recover() {
+    int count = 0;
+    for (ConcurrentMap<String, Job> queue : queues.values()) {
+      for (Job job : queue.values()) {
+        if (transition(job, State.PROCESSING, State.PENDING)) {
+          ++count;
+        }
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public boolean fanOut(String sourceQueueName, String fileName, String targetQueueName) {
+    Job job = get(sourceQueueName, State.PROCESSING, fileName);
+    if (job == null) {
+      return false;
+    }
+    Job copy = new Job(fileName, job.data, job.sequence);
+    return getQueue(targetQueueName).putIfAbsent(fileName, copy) == null;
+  }
+
+  @Override
+  public boolean delete(String queueName, State state, String fileName) {
+    ConcurrentMap<String, Job> queue = queues.get(queueName);
+    Job job = queue == null ? null : queue.get(fileName);
+    if (job == null) {
+      return false;
+    }
+    Status status;
+    do {
+      status = job.status.get();
+      if (status.state != state) {
+        return false;
+      }
+    } while (!job.status.compareAndSet(status, DELETED));
+    queue.remove(fileName, job);
+    return true;
+  }
+
+  @Override
+  public boolean isDiscoveryOrdered() {
+    return true;
+  }
+
+  @Override
+  public List<File> discover(String queueName, State state) {
+    ConcurrentMap<String, Job> queue = queues.get(queueName);
+    if (queue == null) {
+      return List.of();
+    }
+    return queue.values().stream()
+        .filter(job -> job.status.get().state == state)
+        .sorted(Comparator.comparingLong(job -> job.sequence))
+        .map(job -> getFile(queueName, state, job.name))
+        .toList();
+  }
+
+  @Override
+  public File getFile(String queueName, State state, String fileName) {
+    return root.resolve(queueName).resolve(state.getDirectoryName()).resolve(fileName).toFile();
+  }
+
+  /**
+   * Returns the contents of a job. The array is shared, and must not be modified.
+   */
+  @Override
+  public byte[] read(String queueName, State state, String fileName) throws IOException {
+    Job job = get(queueName, state, fileName);
+    if (job == null) {
+      throw new NoSuchFileException(getFile(queueName, state, fileName).toString());
+    }
+    return job.data;
+  }
+
+  @Override
+  public long lastModified(String queueName, State state, String fileName) {
+    Job job = get(queueName, state, fileName);
+    return job == null ? 0 : job.status.get().time;
+  }
+
+  @Override
+  public Map<String, Integer> readIndex() {
+    Map<String, Integer> index = new HashMap<>();
+    queues.values().stream()
+        .flatMap(queue -> queue.values().stream())
+        .sorted(Comparator.comparingLong(job -> job.sequence))
+        .forEachOrdered(job -> index.putIfAbsent(job.name, index.size()));
+    return index;
+  }
+
+  /**
+   * Does nothing, since deleted jobs are removed from memory immediately.
+   */
+  @Override
+  public void compactIndex() {
+    // nothing to compact
+  }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import ar.com.rjgodoy.webhook_router.filter.QueueDecl;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Removes processed jobs according to the {@code RETENTION} policies of their queues.
+ * <p>
+ * The processed jobs of each queue are tracked in order of completion, so that the oldest job is
+ * always at the head of the history. Since both the number of newer jobs and the age decrease
+ * along the history, a pass only needs to look at the head, and stops at the first job that must
+ * be retained. The processed directory of a queue is listed only once, the first time the queue
+ * is swept, in order to pick up the jobs that were completed by a previous process.
+ */
+final class RetentionSweeper {
+
+  private final SpoolStore spool;
+
+  private final LongSupplier clock;
+
+  private final Map<String, History> histories;
+
+  RetentionSweeper(SpoolStore spool, Iterable<QueueDecl> queues) {
+    this(spool, queues, System::currentTimeMillis);
+  }
+
+  /**
+   * @param clock the source of the current time, in milliseconds.
+   */
+  RetentionSweeper(SpoolStore spool, Iterable<QueueDecl> queues, LongSupplier clock) {
+    this.spool = spool;
+    this.clock = clock;
+    histories = StreamSupport.stream(queues.spliterator(), false)
+        .filter(QueueDecl::hasRetentionPolicy)
+        .collect(Collectors.toUnmodifiableMap(QueueDecl::getName, History::new));
+  }
+
+  private record Entry(String fileName, long completedAt) {}
+
+  private final class History {
+
+    private final QueueDecl queue;
+
+    private Deque<Entry> entries;
+
+    History(QueueDecl queue) {
+      this.queue = queue;
+    }
+
+    synchronized void add(String fileName, long now) throws IOException {
+      seed(fileName);
+      entries.addLast(new Entry(fileName, now));
+      trim(now);
+    }
+
+    synchronized void sweep(long now) throws IOException {
+      seed(null);
+      trim(now);
+    }
+
+    // the job that is being completed is already in the processed directory, and is skipped
+    private void seed(String skip) throws IOException {
+      if (entries == null) {
+        entries = spool.discover(queue.getName(), State.PROCESSED).stream()
+            .filter(file -> !file.getName().equals(skip))
+            .map(file -> new Entry(file.getName(),
+                spool.lastModified(queue.getName(), State.PROCESSED, file.getName())))
+            .sorted(Comparator.comparingLong(Entry::completedAt))
+            .collect(Collectors.toCollection(ArrayDeque::new));
+      }
+    }
+
+    private void trim(long now) throws IOException {
+      Entry head;
+      while ((head = entries.peekFirst()) != null
+          && queue.isExpired(entries.size(), now - head.completedAt)) {
+        spool.delete(queue.getName(), State.PROCESSED, head.fileName);
+        entries.removeFirst();
+      }
+    }
+  }
+
+  /**
+   * Records that a job was moved to the processed state of a queue, and removes the processed
+   * jobs that are no longer retained by the queue.
+   *
+   * @throws IOException if a file system error occurs.
+   */
+  void completed(String queueName, String fileName) throws IOException {
+    History history = histories.get(queueName);
+    if (history != null) {
+      history.add(fileName, clock.getAsLong());
+    }
+  }
+
+  /**
+   * Removes the processed jobs that are no longer retained by their queues. This is only needed
+   * for policies based on age, since the other policies are enforced upon completion.
+   */
+  void sweep() {
+    long now = clock.getAsLong();
+    for (History history : histories.values()) {
+      try {
+        history.sweep(now);
+      } catch (IOException e) {
+        System.err.println("(" + spool.getRoot() + ") " + e.getMessage());
+      }
+    }
+  }
+
+}
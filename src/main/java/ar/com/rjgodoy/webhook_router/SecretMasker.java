@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the occurrences of a set of secrets with {@code ***}.
+ * <p>
+ * The secrets are compiled into an Aho–Corasick automaton, so that a line is scanned once
+ * regardless of the number of secrets. Secrets are matched literally. Where secrets overlap or
+ * are adjacent, the whole span is masked as a single {@code ***}.
+ */
+final class SecretMasker {
+
+  static final String MASK = "***";
+
+  static final SecretMasker EMPTY = new SecretMasker(List.of(), 0);
+
+  private static final class Node {
+    private final Map<Character, Node> next = new HashMap<>();
+    private Node fail;
+    /** The length of the longest secret that is a suffix of this node, or 0. */
+    private int match;
+  }
+
+  private final Node root = new Node();
+
+  /** An opaque value that identifies the set of secrets this masker was built from. */
+  final int stamp;
+
+  SecretMasker(Collection<String> secrets, int stamp) {
+    this.stamp = stamp;
+    for (String secret : secrets) {
+      Node node = root;
+      for (int i = 0; i < secret.length(); i++) {
+        node = node.next.computeIfAbsent(secret.charAt(i), c -> new Node());
+      }
+      node.match = secret.length();
+    }
+
+    // breadth-first, so that the failure link of a node is complete before its children
+    Deque<Node> queue = new ArrayDeque<>();
+    root.fail = root;
+    for (Node child : root.next.values()) {
+      child.fail = root;
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      Node node = queue.poll();
+      node.next.forEach((c, child) -> {
+        Node fail = node.fail;
+        while (fail != root && !fail.next.containsKey(c)) {
+          fail = fail.fail;
+        }
+        child.fail = fail.next.getOrDefault(c, root);
+        child.match = Math.max(child.match, child.fail.match);
+        queue.add(child);
+      });
+    }
+  }
+
+  /**
+   * Returns the string with the secrets masked, or the same instance if no secret occurs in it.
+   */
+  String mask(String s) {
+    if (root.next.isEmpty()) {
+      return s;
+    }
+
+    boolean[] masked = null;
+    Node node = root;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      Node next;
+      while ((next = node.next.get(c)) == null && node != root) {
+        node = node.fail;
+      }
+      node = next != null ? next : root;
+      if (node.match > 0) {
+        if (masked == null) {
+          masked = new boolean[s.length()];
+        }
+        Arrays.fill(masked, i - node.match + 1, i + 1, true);
+      }
+    }
+
+    if (masked == null) {
+      return s;
+    }
+
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      if (!masked[i]) {
+        sb.append(s.charAt(i));
+      } else if (i == 0 || !masked[i - 1]) {
+        sb.append(MASK);
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,681 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static ar.com.rjgodoy.webhook_router.filter.Configuration.DEFAULT_QUEUE;
+import ar.com.rjgodoy.webhook_router.SpoolManager.Durability;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A spool that appends the jobs to rolling segment files, instead of storing each job in its own
+ * file.
+ * <p>
+ * The segments ({@code .segments/00000001.seg}, {@code .segments/00000002.seg}, ...) hold the
+ * records of the jobs enqueued into the default queue, in order. Each record contains the id of
+ * the job, its filename, its contents and a checksum. The state of the jobs within each queue is
+ * kept in memory, and every change is appended to a state log ({@code .segments/state.log}),
+ * which is rewritten when it grows much larger than the state it describes. Both are replayed
+ * when the spool is opened, discarding a torn record or line at the end.
+ * <p>
+ * A job is retained while it exists in some queue, in any state. A sealed segment is deleted as
+ * soon as none of its jobs is retained, so that the retention policies release disk space one
+ * segment at a time.
+ */
+final class SegmentSpool implements SpoolStore {
+
+  static final String DIRECTORY = ".segments";
+
+  static final long MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  private static final String EXTENSION = ".seg";
+
+  private static final String STATE_LOG = "state.log";
+
+  /** The number of lines by which the state log may exceed the state before it is rewritten. */
+  private static final int STATE_LOG_SLACK = 1024;
+
+  // id, length of the name, name, length of the contents, contents, checksum
+  private static final int RECORD_OVERHEAD = 8 + 4 + 4 + 4;
+
+  private final Path root;
+
+  private final Path directory;
+
+  private final long maxSegmentSize;
+
+  private final Durability durability;
+
+  private final GroupCommit groupCommit;
+
+  private static final class Job {
+    final long id;
+    final String name;
+    final long segment;
+    final long offset;
+    final int length;
+
+    /** The number of queues that contain the job. */
+    int references;
+
+    Job(long id, String name, long segment, long offset, int length) {
+      this.id = id;
+      this.name = name;
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private record Entry(Job job, State state, long time) {}
+
+  /**
+   * The jobs in a queue, by filename, and also by state in the order in which they were enqueued,
+   * so that discovering the pending jobs does not walk the processed history.
+   */
+  private static final class Queue {
+    final Map<String, Entry> entries = new HashMap<>();
+    final Map<State, TreeMap<Long, Entry>> states = new EnumMap<>(State.class);
+
+    Entry get(String fileName) {
+      return entries.get(fileName);
+    }
+
+    void put(Entry entry) {
+      Entry previous = entries.put(entry.job.name, entry);
+      if (previous != null) {
+        states.get(previous.state).remove(previous.job.id);
+      }
+      states.computeIfAbsent(entry.state, state -> new TreeMap<>()).put(entry.job.id, entry);
+    }
+
+    void remove(String fileName) {
+      Entry entry = entries.remove(fileName);
+      if (entry != null) {
+        states.get(entry.state).remove(entry.job.id);
+      }
+    }
+
+    Collection<Entry> values(State state) {
+      TreeMap<Long, Entry> ordered = states.get(state);
+      return ordered == null ? List.of() : ordered.values();
+    }
+  }
+
+  /** The jobs in each queue. */
+  private final Map<String, Queue> queues = new HashMap<>();
+
+  /** The number of retained jobs in each segment. */
+  private final Map<Long, Integer> live = new HashMap<>();
+
+  private final Map<Long, FileChannel> readers = new HashMap<>();
+
+  private long nextId = 1;
+
+  private long segmentNumber;
+
+  private FileChannel segment;
+
+  private long segmentSize;
+
+  private FileChannel stateLog;
+
+  private long stateLogLines;
+
+  private long entries;
+
+  /**
+   * Opens a spool with segments of at most {@link #MAX_SEGMENT_SIZE} bytes.
+   *
+   * @see SpoolManager#SpoolManager(File, Durability, long, int)
+   */
+  SegmentSpool(File root, Durability durability, long groupInterval, int groupSize)
+      throws IOException {
+    this(root, MAX_SEGMENT_SIZE, durability, groupInterval, groupSize);
+  }
+
+  /**
+   * Opens a spool, replaying its segments and state log.
+   *
+   * @param maxSegmentSize the size after which a new segment is started.
+   * @see SpoolManager#SpoolManager(File, Durability, long, int)
+   */
+  SegmentSpool(File root, long maxSegmentSize, Durability durability, long groupInterval,
+      int groupSize) throws IOException {
+    this.root = Objects.requireNonNull(root, "Spool root file cannot be null.").toPath();
+    directory = this.root.resolve(DIRECTORY);
+    this.maxSegmentSize = maxSegmentSize;
+    this.durability = Objects.requireNonNull(durability);
+    groupCommit = durability == Durability.GROUP
+        ? new GroupCommit(this::force, groupInterval, groupSize)
+        : null;
+    load();
+  }
+
+  private Path getSegment(long number) {
+    return directory.resolve(String.format("%08d", number) + EXTENSION);
+  }
+
+  private List<Long> getSegmentNumbers() throws IOException {
+    try (Stream<Path> stream = Files.list(directory)) {
+      return stream.map(path -> path.getFileName().toString())
+          .filter(name -> name.endsWith(EXTENSION) && name.length() == 8 + EXTENSION.length())
+          .map(name -> Long.parseLong(name.substring(0, 8)))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private void load() throws IOException {
+    Files.createDirectories(directory);
+
+    Map<Long, Job> jobs = new HashMap<>();
+    List<Long> numbers = getSegmentNumbers();
+    for (int i = 0; i < numbers.size(); i++) {
+      scan(numbers.get(i), jobs, i == numbers.size() - 1);
+    }
+    for (Job job : jobs.values()) {
+      nextId = Math.max(nextId, job.id + 1);
+    }
+
+    Path log = directory.resolve(STATE_LOG);
+    if (Files.exists(log)) {
+      byte[] bytes = Files.readAllBytes(log);
+      int end = 0;
+      for (int i = 0; i < bytes.length; i++) {
+        if (bytes[i] == '\n') {
+          replay(new String(bytes, end, i - end, StandardCharsets.UTF_8), jobs);
+          end = i + 1;
+          ++stateLogLines;
+        }
+      }
+      if (end < bytes.length) {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+          channel.truncate(end);
+        }
+      }
+    }
+    stateLog = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+
+    for (Queue queue : queues.values()) {
+      for (Entry entry : queue.entries.values()) {
+        if (entry.job.references++ == 0) {
+          live.merge(entry.job.segment, 1, Integer::sum);
+        }
+        ++entries;
+      }
+    }
+
+    if (!numbers.isEmpty()) {
+      segmentNumber = numbers.get(numbers.size() - 1);
+      segment = FileChannel.open(getSegment(segmentNumber), StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND);
+      segmentSize = segment.size();
+      for (long number : numbers) {
+        if (number != segmentNumber && !live.containsKey(number)) {
+          Files.delete(getSegment(number));
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the records of a segment. A torn record at the end of the last segment (which was being
+   * written when the process stopped) is discarded.
+   */
+  private void scan(long number, Map<Long, Job> jobs, boolean last) throws IOException {
+    Path path = getSegment(number);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        ByteBuffer header = read(channel, position, 12, size);
+        if (header == null) {
+          break;
+        }
+        long id = header.getLong();
+        int nameLength = header.getInt();
+        ByteBuffer name =
+            nameLength < 0 ? null : read(channel, position + 12, nameLength + 4, size);
+        if (name == null) {
+          break;
+        }
+        int length = name.getInt(nameLength);
+        long end = position + RECORD_OVERHEAD + nameLength + length;
+        if (length < 0 || end > size) {
+          break;
+        }
+        if (last) {
+          // only the last segment may have been torn, the others were complete when sealed
+          ByteBuffer record = read(channel, position, (int) (end - position), size);
+          CRC32 crc = new CRC32();
+          crc.update(record.array(), 0, record.limit() - 4);
+          if ((int) crc.getValue() != record.getInt(record.limit() - 4)) {
+            break;
+          }
+        }
+        String fileName = new String(name.array(), 0, nameLength, StandardCharsets.UTF_8);
+        long offset = position + 16 + nameLength;
+        jobs.put(id, new Job(id, fileName, number, offset, length));
+        position = end;
+      }
+
+      if (position < size) {
+        if (last) {
+          channel.truncate(position);
+        } else {
+          System.err.println("(" + path + ") Malformed record at position " + position);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads a number of bytes at the given position.
+   *
+   * @return a buffer with the bytes, or {@code null} if they extend beyond the given size.
+   */
+  private static ByteBuffer read(FileChannel channel, long position, int length, long size)
+      throws IOException {
+    if (position + length > size) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+    return buffer.flip();
+  }
+
+  private void replay(String line, Map<Long, Job> jobs) {
+    String[] fields = line.split(" ");
+    try {
+      if (fields.length == 5 && fields[0].equals("P")) {
+        Job job = jobs.get(Long.parseLong(fields[3]));
+        if (job != null) {
+          queues.computeIfAbsent(fields[1], name -> new Queue())
+              .put(new Entry(job, State.valueOf(fields[2]), Long.parseLong(fields[4])));
+        }
+        return;
+      } else if (fields.length == 3 && fields[0].equals("D")) {
+        Job job = jobs.get(Long.parseLong(fields[2]));
+        Queue queue = queues.get(fields[1]);
+        if (job != null && queue != null && queue.get(job.name) != null
+            && queue.get(job.name).job == job) {
+          queue.remove(job.name);
+        }
+        return;
+      }
+    } catch (IllegalArgumentException e) {
+      // malformed
+    }
+    System.err.println("(" + directory.resolve(STATE_LOG) + ") Malformed line: " + line);
+  }
+
+  private static String format(String queueName, Entry entry) {
+    return "P " + queueName + " " + entry.state.name() + " " + entry.job.id + " " + entry.time;
+  }
+
+  private void log(String line) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      stateLog.write(buffer);
+    }
+    ++stateLogLines;
+  }
+
+  /**
+   * Appends a job to the active segment, starting a new segment if the active one is full.
+   */
+  private Job append(String fileName, byte[] data) throws IOException {
+    if (segment == null || segmentSize >= maxSegmentSize) {
+      roll();
+    }
+
+    byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_OVERHEAD + name.length + data.length);
+    long id = nextId++;
+    buffer.putLong(id).putInt(name.length).put(name).putInt(data.length).put(data);
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 0, buffer.position());
+    buffer.putInt((int) crc.getValue());
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      segment.write(buffer);
+    }
+
+    Job job = new Job(id, fileName, segmentNumber, segmentSize + 16 + name.length, data.length);
+    segmentSize += buffer.limit();
+    return job;
+  }
+
+  private void roll() throws IOException {
+    if (segment != null) {
+      if (durability != Durability.NONE) {
+        segment.force(false);
+      }
+      segment.close();
+      if (!live.containsKey(segmentNumber)) {
+        deleteSegment(segmentNumber);
+      }
+    }
+    ++segmentNumber;
+    segment = FileChannel.open(getSegment(segmentNumber), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    segmentSize = segment.size();
+    if (durability != Durability.NONE) {
+      SpoolManager.forceDirectory(directory);
+    }
+  }
+
+  private void deleteSegment(long number) throws IOException {
+    FileChannel reader = readers.remove(number);
+    if (reader != null) {
+      reader.close();
+    }
+    Files.deleteIfExists(getSegment(number));
+  }
+
+  private FileChannel getReader(long number) throws IOException {
+    FileChannel reader = readers.get(number);
+    if (reader == null) {
+      reader = FileChannel.open(getSegment(number), StandardOpenOption.READ);
+      readers.put(number, reader);
+    }
+    return reader;
+  }
+
+  private Entry get(String queueName, State state, String fileName) {
+    Queue queue = queues.get(queueName);
+    Entry entry = queue == null ? null : queue.get(fileName);
+    return entry != null && entry.state == state ? entry : null;
+  }
+
+  private boolean contains(String queueName, String fileName) {
+    Queue queue = queues.get(queueName);
+    return queue != null && queue.entries.containsKey(fileName);
+  }
+
+  private void add(String queueName, Job job) throws IOException {
+    Entry entry = new Entry(job, State.PENDING, System.currentTimeMillis());
+    queues.computeIfAbsent(queueName, name -> new Queue()).put(entry);
+    if (job.references++ == 0) {
+      live.merge(job.segment, 1, Integer::sum);
+    }
+    ++entries;
+    log(format(queueName, entry));
+  }
+
+  private synchronized boolean transition(String queueName, String fileName, State from,
+      State to) throws IOException {
+    Entry entry = get(queueName, from, fileName);
+    if (entry == null) {
+      return false;
+    }
+    entry = new Entry(entry.job, to, System.currentTimeMillis());
+    queues.get(queueName).put(entry);
+    log(format(queueName, entry));
+    return true;
+  }
+
+  /**
+   * Forces the active segment and the state log to disk, according to the durability mode.
+   */
+  private void commit() throws IOException {
+    switch (durability) {
+      case SYNC:
+        force();
+        break;
+      case GROUP:
+        groupCommit.commit(List.of(), List.of());
+        break;
+      default:
+        break;
+    }
+  }
+
+  private synchronized void force() throws IOException {
+    if (segment != null) {
+      segment.force(false);
+    }
+    stateLog.force(false);
+  }
+
+  @Override
+  public Path getRoot() {
+    return root;
+  }
+
+  /**
+   * Enqueues a webhook file from the spool root, by appending its contents to the active segment.
+   * The file is deleted once it has been enqueued.
+   */
+  @Override
+  public boolean enqueue(File sourceFile) throws IOException {
+    if (!sourceFile.exists() || !sourceFile.isFile()) {
+      throw new FileNotFoundException(
+          "Source file not found or is not a regular file: " + sourceFile.getAbsolutePath());
+    }
+    if (!write(sourceFile.getName(), Files.readAllBytes(sourceFile.toPath()))) {
+      return false;
+    }
+    Files.delete(sourceFile.toPath());
+    return true;
+  }
+
+  @Override
+  public boolean write(String fileName, byte[] data) throws IOException {
+    synchronized (this) {
+      if (contains(DEFAULT_QUEUE, fileName)) {
+        return false;
+      }
+      add(DEFAULT_QUEUE, append(fileName, data));
+    }
+    commit();
+    return true;
+  }
+
+  @Override
+  public boolean claim(String queueName, String fileName) throws IOException {
+    return transition(queueName, fileName, State.PENDING, State.PROCESSING);
+  }
+
+  @Override
+  public boolean complete(String queueName, String fileName) throws IOException {
+    return transition(queueName, fileName, State.PROCESSING, State.PROCESSED);
+  }
+
+  @Override
+  public boolean fail(String queueName, String fileName) throws IOException {
+    return transition(queueName, fileName, State.PROCESSING, State.FAILED);
+  }
+
+  @Override
+  public synchronized int recover() throws IOException {
+    int count = 0;
+    for (Map.Entry<String, Queue> queue : queues.entrySet()) {
+      for (Entry entry : List.copyOf(queue.getValue().values(State.PROCESSING))) {
+        Entry pending = new Entry(entry.job, State.PENDING, System.currentTimeMillis());
+        queue.getValue().put(pending);
+        log(format(queue.getKey(), pending));
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public boolean fanOut(String sourceQueueName, String fileName, String targetQueueName)
+      throws IOException {
+    synchronized (this) {
+      Entry entry = get(sourceQueueName, State.PROCESSING, fileName);
+      if (entry == null || contains(targetQueueName, fileName)) {
+        return false;
+      }
+      add(targetQueueName, entry.job);
+    }
+    commit();
+    return true;
+  }
+
+  @Override
+  public synchronized boolean delete(String queueName, State state, String fileName)
+      throws IOException {
+    Entry entry = get(queueName, state, fileName);
+    if (entry == null) {
+      return false;
+    }
+    queues.get(queueName).remove(fileName);
+    --entries;
+    log("D " + queueName + " " + entry.job.id);
+
+    Job job = entry.job;
+    if (--job.references == 0 && live.merge(job.segment, -1, Integer::sum) == 0) {
+      live.remove(job.segment);
+      if (job.segment != segmentNumber) {
+        deleteSegment(job.segment);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isDiscoveryOrdered() {
+    return true;
+  }
+
+  @Override
+  public synchronized List<File> discover(String queueName, State state) {
+    Queue queue = queues.get(queueName);
+    if (queue == null) {
+      return List.of();
+    }
+    return queue.values(state).stream()
+        .map(entry -> getFile(queueName, state, entry.job.name))
+        .toList();
+  }
+
+  @Override
+  public File getFile(String queueName, State state, String fileName) {
+    return root.resolve(queueName).resolve(state.getDirectoryName()).resolve(fileName).toFile();
+  }
+
+  @Override
+  public byte[] read(String queueName, State state, String fileName) throws IOException {
+    Job job;
+    FileChannel reader;
+    synchronized (this) {
+      Entry entry = get(queueName, state, fileName);
+      if (entry == null) {
+        throw new NoSuchFileException(getFile(queueName, state, fileName).toString());
+      }
+      job = entry.job;
+      reader = getReader(job.segment);
+    }
+    // the segment is not deleted while the job is retained
+    return read(reader, job.offset, job.length, job.offset + job.length).array();
+  }
+
+  @Override
+  public synchronized long lastModified(String queueName, State state, String fileName) {
+    Entry entry = get(queueName, state, fileName);
+    return entry == null ? 0 : entry.time;
+  }
+
+  /**
+   * Returns the order in which the retained jobs were enqueued. The scheduler does not need it,
+   * since {@link #discover(String, State)} already lists the jobs in that order.
+   */
+  @Override
+  public synchronized Map<String, Integer> readIndex() {
+    Map<String, Integer> index = new HashMap<>();
+    queues.values().stream()
+        .flatMap(queue -> queue.entries.values().stream())
+        .map(Entry::job)
+        .distinct()
+        .sorted(Comparator.comparingLong(job -> job.id))
+        .forEachOrdered(job -> index.putIfAbsent(job.name, index.size()));
+    return index;
+  }
+
+  /**
+   * Rewrites the state log if it has grown much larger than the state it describes.
+   */
+  @Override
+  public synchronized void compactIndex() throws IOException {
+    if (stateLogLines <= 2 * entries + STATE_LOG_SLACK) {
+      return;
+    }
+
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<String, Queue> queue : queues.entrySet()) {
+      for (Entry entry : queue.getValue().entries.values()) {
+        lines.add(format(queue.getKey(), entry));
+      }
+    }
+
+    Path log = directory.resolve(STATE_LOG);
+    Path temp = directory.resolve(STATE_LOG + ".tmp");
+    Files.write(temp, lines);
+    if (durability != Durability.NONE) {
+      SpoolManager.forceFile(temp);
+    }
+    // the new log is opened before it replaces the old one, which stays usable if the move fails
+    FileChannel channel =
+        FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    try {
+      Files.move(temp, log, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      channel.close();
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    FileChannel old = stateLog;
+    stateLog = channel;
+    stateLogLines = lines.size();
+    old.close();
+    if (durability != Durability.NONE) {
+      SpoolManager.forceDirectory(directory);
+    }
+  }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives webhooks over a Unix domain socket, for a proxy that runs on the same host.
+ * <p>
+ * A connection carries any number of frames. Each frame is a 4-byte big-endian length followed by
+ * the contents of a spool file (the request URI, the headers and the payload, separated by blank
+ * lines). Each frame is acknowledged with a single status byte once the webhook has been written
+ * into the spool: {@link #ACCEPTED}, {@link #REJECTED} if the frame is malformed or duplicated,
+ * or {@link #FAILED} if it could not be written. Frames longer than {@link #MAX_FRAME_LENGTH}
+ * close the connection.
+ */
+final class SocketIngress implements AutoCloseable {
+
+  static final byte ACCEPTED = 0;
+  static final byte REJECTED = 1;
+  static final byte FAILED = 2;
+
+  static final int MAX_FRAME_LENGTH = 32 << 20;
+
+  private final WorkerScheduler scheduler;
+
+  private final Path path;
+
+  private final ServerSocketChannel server;
+
+  private final ExecutorService executor;
+
+  SocketIngress(WorkerScheduler scheduler, Path path) throws IOException {
+    this.scheduler = scheduler;
+    this.path = path;
+    deleteStaleSocket(path);
+    server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    server.bind(UnixDomainSocketAddress.of(path));
+    executor = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "socket-ingress");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.execute(this::accept);
+  }
+
+  /**
+   * Deletes a socket file left behind by a previous process, which would prevent the bind. Any
+   * other file at the path is left alone.
+   *
+   * @throws IOException if the path is not a socket, or another process is listening on it.
+   */
+  private static void deleteStaleSocket(Path path) throws IOException {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    } catch (NoSuchFileException e) {
+      return;
+    }
+    // a socket is neither a regular file, a directory nor a symbolic link
+    if (!attributes.isOther()) {
+      throw new FileAlreadyExistsException(path.toString(), null, "Not a socket");
+    }
+    try {
+      SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+    } catch (ConnectException e) {
+      // nobody is listening
+      Files.deleteIfExists(path);
+      return;
+    }
+    throw new FileAlreadyExistsException(path.toString(), null, "Socket is in use");
+  }
+
+  private void accept() {
+    while (server.isOpen()) {
+      try {
+        SocketChannel channel = server.accept();
+        executor.execute(() -> serve(channel));
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        System.err.println("(" + path + ") " + e.getMessage());
+      }
+    }
+  }
+
+  private void serve(SocketChannel channel) {
+    try (channel) {
+      ByteBuffer header = ByteBuffer.allocate(4);
+      ByteBuffer status = ByteBuffer.allocate(1);
+      while (read(channel, header.clear())) {
+        int length = header.flip().getInt();
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+          System.err.println("(" + path + ") Frame too long: " + length);
+          return;
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        if (!read(channel, frame)) {
+          throw new EOFException("Truncated frame");
+        }
+
+        status.clear().put(receive(frame.array())).flip();
+        while (status.hasRemaining()) {
+          channel.write(status);
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("(" + path + ") " + e.getMessage());
+    }
+  }
+
+  /**
+   * Fills the buffer from the channel.
+   *
+   * @return {@code false} if the channel reached the end of stream before any byte was read.
+   * @throws EOFException if the channel reached the end of stream after some bytes were read.
+   */
+  private static boolean read(SocketChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        if (buffer.position() == 0) {
+          return false;
+        }
+        throw new EOFException("Truncated frame");
+      }
+    }
+    return true;
+  }
+
+  private byte receive(byte[] data) {
+    try {
+      // check the framing before the webhook is accepted
+      SpoolFileReader reader = new SpoolFileReader(data);
+      reader.readRequestUri();
+      reader.readHeaders();
+    } catch (IOException e) {
+      System.err.println("(" + path + ") Malformed frame: " + e.getMessage());
+      return REJECTED;
+    }
+
+    try {
+      return scheduler.receive(data) != null ? ACCEPTED : REJECTED;
+    } catch (IOException e) {
+      System.err.println("(" + path + ") " + e.getMessage());
+      return FAILED;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+    // the connections are blocked reading the next frame, interrupting them closes their channels
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    Files.deleteIfExists(path);
+  }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import lombok.Getter;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Reads a webhook from a spool file.
+ * <p>
+ * A spool file contains the request URI, the headers (one per line) and the payload, separated
+ * by blank lines. The file is read once, the sections are scanned at byte level, and the payload
+ * is decoded straight from the bytes of the file while it is parsed.
+ */
+final class SpoolFileReader {
+
+  private final byte[] data;
+
+  private int pos;
+
+  /** The position of the payload within the file, once the headers have been read. */
+  @Getter
+  private int payloadOffset = -1;
+
+  SpoolFileReader(byte[] data) {
+    this.data = data;
+  }
+
+  int getPayloadLength() {
+    return data.length - payloadOffset;
+  }
+
+  /**
+   * Returns the end of the section that starts at the current position, and moves past the blank
+   * line that terminates it.
+   */
+  private int nextSection() throws EOFException {
+    int count = 0;
+    int i = pos;
+    while (i < data.length) {
+      switch (data[i++]) {
+        case '\r':
+          continue;
+        case '\n':
+          if (++count == 2) {
+            int start = pos;
+            pos = i;
+            // the section does not include the line terminators
+            while (i > start && (data[i - 1] == '\r' || data[i - 1] == '\n')) {
+              i--;
+            }
+            return i;
+          }
+          break;
+        default:
+          count = 0;
+      }
+    }
+    throw new EOFException("Unterminated section at offset " + pos);
+  }
+
+  String readRequestUri() throws IOException {
+    int start = pos;
+    int end = nextSection();
+    return new String(data, start, end - start, StandardCharsets.UTF_8);
+  }
+
+  HeaderMap readHeaders() throws IOException {
+    int start = pos;
+    int end = nextSection();
+    HeaderMap headers = new HeaderMap();
+    while (start < end) {
+      int eol = indexOf('\n', start, end);
+      int colon = indexOf(':', start, eol);
+      if (colon == eol) {
+        throw new IOException("Malformed header at offset " + start);
+      }
+
+      // the value is trimmed as String.trim() would do
+      int from = colon + 1;
+      int to = eol;
+      while (from < to && (data[from] & 0xFF) <= ' ') {
+        from++;
+      }
+      while (to > from && (data[to - 1] & 0xFF) <= ' ') {
+        to--;
+      }
+
+      // header names are tokens, i.e. ASCII
+      String name = new String(data, start, colon - start, StandardCharsets.ISO_8859_1);
+      String value = new String(data, from, to - from, StandardCharsets.UTF_8);
+      headers.add(new Header(name, value));
+      start = eol + 1;
+    }
+    payloadOffset = pos;
+    return headers;
+  }
+
+  private int indexOf(char c, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (data[i] == c) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Parses the payload, which is decoded as UTF-8.
+   *
+   * @throws IllegalStateException if the headers have not been read.
+   * @throws org.json.JSONException if the payload is not a JSON object.
+   */
+  JSONObject readPayload() {
+    if (payloadOffset < 0) {
+      throw new IllegalStateException();
+    }
+    var in = new ByteArrayInputStream(data, payloadOffset, getPayloadLength());
+    return new JSONObject(new JSONTokener(new InputStreamReader(in, StandardCharsets.UTF_8)));
+  }
+
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Records the order in which jobs were enqueued.
+ * <p>
+ * The index is split into segments ({@code .index.000001}, {@code .index.000002}, ...) that are
+ * written in append mode. When the active segment exceeds {@link #MAX_SEGMENT_SIZE} bytes, a new
+ * segment is started. Sealed segments are compacted by dropping the entries of jobs that are no
+ * longer pending or processing, and segments that become empty are deleted. A legacy
+ * {@code .index} file is read (and compacted) as the first sealed segment.
+ * <p>
+ * Appends may be buffered, so that the entries of several jobs are written (and forced to disk)
+ * at once by {@link #flush(boolean)}. Buffered entries are flushed before the index is read.
+ */
+final class SpoolIndex {
+
+  static final String INDEX_FILENAME = ".index";
+
+  static final long MAX_SEGMENT_SIZE = 256 * 1024;
+
+  /** The number of segments sealed since the last compaction after which a compaction is due. */
+  static final int COMPACT_SEGMENTS = 8;
+
+  private final Path directory;
+
+  private final long maxSegmentSize;
+
+  /** Whether appends are buffered until the next flush. */
+  private final boolean buffered;
+
+  private final StringBuilder buffer = new StringBuilder();
+
+  /** The number of the active segment, or 0 if it has not been determined yet. */
+  private long activeNumber;
+
+  private long activeSize;
+
+  private int sealedSinceCompaction;
+
+  /**
+   * The segments to which buffered entries were written without forcing them to disk (e.g. when
+   * the index was read), which must be forced by the next forced flush.
+   */
+  private final Set<Long> unforced = new HashSet<>();
+
+  /** Whether a segment was created without forcing the directory to disk. */
+  private boolean unforcedDirectory;
+
+  SpoolIndex(Path directory) {
+    this(directory, MAX_SEGMENT_SIZE);
+  }
+
+  SpoolIndex(Path directory, long maxSegmentSize) {
+    this(directory, maxSegmentSize, false);
+  }
+
+  SpoolIndex(Path directory, long maxSegmentSize, boolean buffered) {
+    this.directory = directory;
+    this.maxSegmentSize = maxSegmentSize;
+    this.buffered = buffered;
+  }
+
+  /**
+   * Lists the segments of the index, from oldest to newest.
+   */
+  private List<Path> getSegments() throws IOException {
+    List<Path> segments = new ArrayList<>();
+    Path legacy = directory.resolve(INDEX_FILENAME);
+    if (Files.exists(legacy)) {
+      segments.add(legacy);
+    }
+    if (Files.isDirectory(directory)) {
+      try (Stream<Path> stream = Files.list(directory)) {
+        stream.filter(path -> getSegmentNumber(path) > 0)
+            .sorted((a, b) -> Long.compare(getSegmentNumber(a), getSegmentNumber(b)))
+            .forEachOrdered(segments::add);
+      }
+    }
+    return segments;
+  }
+
+  private static long getSegmentNumber(Path path) {
+    String name = path.getFileName().toString();
+    if (name.startsWith(INDEX_FILENAME + ".")) {
+      try {
+        return Long.parseLong(name.substring(INDEX_FILENAME.length() + 1));
+      } catch (NumberFormatException e) {
+        // not a segment
+      }
+    }
+    return 0;
+  }
+
+  private Path getSegment(long number) {
+    return directory.resolve(String.format("%s.%06d", INDEX_FILENAME, number));
+  }
+
+  /**
+   * Appends a filename to the index. Unless appends are buffered, the filename is written to the
+   * active segment immediately.
+   *
+   * @param force whether to force the segment to disk, if the filename is written immediately.
+   */
+  synchronized void append(String fileName, boolean force) throws IOException {
+    buffer.append(fileName).append('\n');
+    if (!buffered) {
+      flush(force);
+    }
+  }
+
+  synchronized void append(String fileName) throws IOException {
+    append(fileName, false);
+  }
+
+  /**
+   * Writes the buffered entries to the active segment, starting a new segment if the active one
+   * is full.
+   *
+   * @param force whether to force the segment (and the directory, if the segment was created) to
+   *        disk, as well as the buffered entries that were previously written without forcing them.
+   */
+  synchronized void flush(boolean force) throws IOException {
+    if (buffer.isEmpty()) {
+      if (force) {
+        forceUnforced();
+      }
+      return;
+    }
+
+    if (activeNumber == 0) {
+      List<Path> segments = getSegments();
+      Path last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      if (last != null && getSegmentNumber(last) > 0) {
+        activeNumber = getSegmentNumber(last);
+        activeSize = Files.size(last);
+      } else {
+        activeNumber = 1;
+        activeSize = 0;
+      }
+    }
+    if (activeSize >= maxSegmentSize) {
+      ++activeNumber;
+      activeSize = 0;
+      ++sealedSinceCompaction;
+    }
+    boolean created = activeSize == 0;
+
+    byte[] data = buffer.toString().getBytes(StandardCharsets.UTF_8);
+    buffer.setLength(0);
+    Files.createDirectories(directory);
+    Path segment = getSegment(activeNumber);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      ByteBuffer bytes = ByteBuffer.wrap(data);
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+      if (force) {
+        channel.force(false);
+      }
+    }
+    activeSize += data.length;
+
+    if (force) {
+      unforced.remove(activeNumber);
+      unforcedDirectory |= created;
+      forceUnforced();
+    } else if (buffered) {
+      // only buffered appends are forced later, by a group commit
+      unforced.add(activeNumber);
+      unforcedDirectory |= created;
+    }
+  }
+
+  private void forceUnforced() throws IOException {
+    for (long number : unforced) {
+      Path segment = getSegment(number);
+      if (Files.exists(segment)) {
+        SpoolManager.forceFile(segment);
+      }
+    }
+    unforced.clear();
+    if (unforcedDirectory) {
+      SpoolManager.forceDirectory(directory);
+      unforcedDirectory = false;
+    }
+  }
+
+  /**
+   * Returns whether all the appended entries have been written and forced to disk.
+   */
+  synchronized boolean isForced() {
+    return buffer.isEmpty() && unforced.isEmpty() && !unforcedDirectory;
+  }
+
+  /**
+   * Reads the segments of the index.
+   *
+   * @return A map from each filename to its position in the index. If a filename was appended more
+   *         than once, its first position is retained.
+   */
+  synchronized Map<String, Integer> read() throws IOException {
+    flush(false);
+    Map<String, Integer> index = new HashMap<>();
+    for (Path segment : getSegments()) {
+      try (Stream<String> lines = Files.lines(segment)) {
+        lines.forEachOrdered(line -> index.putIfAbsent(line, index.size()));
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns whether enough segments were sealed since the last compaction that the index should be
+   * compacted, even if the spool never runs idle.
+   */
+  synchronized boolean isCompactionDue() {
+    return sealedSinceCompaction >= COMPACT_SEGMENTS;
+  }
+
+  /**
+   * Compacts the sealed segments, retaining only the entries that satisfy the given predicate. The
+   * active segment is never compacted, since it may be receiving appends.
+   * <p>
+   * The predicate must be computed while holding the lock of this index, so that no entry is
+   * appended between the time the live jobs are listed and the time their segment is compacted.
+   */
+  synchronized void compact(Predicate<String> live) throws IOException {
+    flush(false);
+    sealedSinceCompaction = 0;
+    List<Path> segments = getSegments();
+    if (!segments.isEmpty() && getSegmentNumber(segments.get(segments.size() - 1)) > 0) {
+      segments.remove(segments.size() - 1);
+    }
+    for (Path segment : segments) {
+      List<String> lines = Files.readAllLines(segment);
+      List<String> retained = lines.stream().filter(live).toList();
+      if (retained.isEmpty()) {
+        Files.delete(segment);
+      } else if (retained.size() < lines.size()) {
+        Path temp = segment.resolveSibling(segment.getFileName() + ".tmp");
+        Files.write(temp, retained);
+        Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE);
+      }
+    }
+  }
+
+}
@@ -4,17 +4,19 @@ import static ar.com.rjgodoy.webhook_router.filter.Configuration.DEFAULT_QUEUE;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
+import java.nio.file.attribute.FileTime;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Stream;
-import lombok.Getter;
 
 /**
  * Manages the lifecycle of jobs within a filesystem-based spooling system.
@@ -26,34 +28,44 @@ import lombok.Getter;
  * efficient, parallel processing.
  * <p>
  * The manager is stateless; its methods operate directly on the filesystem,
- * making it robust against application restarts.
+ * making it robust against application restarts. How much of a new job is forced to disk before
+ * it is acknowledged depends on the {@link Durability} mode.
  */
-public final class SpoolManager {
-
-  private static final String INDEX_FILENAME = ".index";
+public final class SpoolManager implements SpoolStore {
 
   private final Path spoolRoot;
 
-  /**
-   * Defines the valid states of a job and their corresponding directory names.
-   */
-  public enum State {
-    PENDING("pending"), PROCESSING("processing"), PROCESSED("processed"), FAILED("failed");
+  private final SpoolIndex index;
 
-    @Getter
-    private final String directoryName;
+  private final Durability durability;
 
-    State(String directoryName) {
-      this.directoryName = directoryName;
-    }
+  private final GroupCommit groupCommit;
 
+  /** The default interval of {@link Durability#GROUP}, in milliseconds. */
+  public static final long DEFAULT_GROUP_INTERVAL = 10;
+
+  /** The default number of jobs of {@link Durability#GROUP}. */
+  public static final int DEFAULT_GROUP_SIZE = 64;
+
+  /**
+   * Defines how new jobs are forced to disk before {@link #enqueue} and {@link #write} return.
+   */
+  public enum Durability {
+    /** Nothing is forced to disk; a crash may lose the jobs that were recently enqueued. */
+    NONE,
+    /** The file, its directory entry and the index entry of each job are forced to disk. */
+    SYNC,
+    /** As {@code SYNC}, but the jobs enqueued concurrently are forced to disk together. */
+    GROUP
   }
 
   public List<String> getAllQueues() throws IOException {
-    return Files.list(spoolRoot)
-        .filter(Files::isDirectory)
-        .map(path -> path.getFileName().toString())
-        .toList();
+    try (Stream<Path> stream = Files.list(spoolRoot)) {
+      return stream
+          .filter(Files::isDirectory)
+          .map(path -> path.getFileName().toString())
+          .toList();
+    }
   }
 
   private Stream<Path> getQueueSubdirectories(String queueName) {
@@ -69,7 +81,28 @@ public final class SpoolManager {
    * @throws NullPointerException if spoolRoot is null.
    */
   public SpoolManager(File spoolRoot) {
+    this(spoolRoot, Durability.NONE, DEFAULT_GROUP_INTERVAL, DEFAULT_GROUP_SIZE);
+  }
+
+  /**
+   * Creates a new manager for the given spool directory.
+   *
+   * @param spoolRoot The root directory of the spool.
+   * @param durability How new jobs are forced to disk.
+   * @param groupInterval The maximum time (in milliseconds) that a job waits for other jobs to be
+   *        forced to disk together, if durability is {@link Durability#GROUP}.
+   * @param groupSize The number of jobs after which a group is forced to disk without waiting,
+   *        if durability is {@link Durability#GROUP}.
+   * @throws NullPointerException if spoolRoot or durability is null.
+   */
+  public SpoolManager(File spoolRoot, Durability durability, long groupInterval, int groupSize) {
     this.spoolRoot = Objects.requireNonNull(spoolRoot, "Spool root file cannot be null.").toPath();
+    this.durability = Objects.requireNonNull(durability);
+    index = new SpoolIndex(this.spoolRoot.resolve(DEFAULT_QUEUE), SpoolIndex.MAX_SEGMENT_SIZE,
+        durability == Durability.GROUP);
+    groupCommit = durability == Durability.GROUP
+        ? new GroupCommit(() -> index.flush(true), groupInterval, groupSize)
+        : null;
   }
 
   /**
@@ -83,6 +116,7 @@ public final class SpoolManager {
    * @return {@code true} if the move was successful, {@code false} if the the job file does not
    *         exist in the 'pending' state.
    */
+  @Override
   public boolean claim(String queueName, String fileName) throws IOException {
     Path sourceDir = getPathForState(queueName, State.PENDING);
     Path targetDir = getPathForState(queueName, State.PROCESSING);
@@ -100,10 +134,18 @@ public final class SpoolManager {
    * @return {@code true} if the move was successful, {@code false} if the the job file does not
    *         exist in the 'processing' state.
    */
+  @Override
   public boolean complete(String queueName, String fileName) throws IOException {
     Path sourceDir = getPathForState(queueName, State.PROCESSING);
     Path targetDir = getPathForState(queueName, State.PROCESSED);
-    return moveJobAtomically(sourceDir.resolve(fileName), targetDir.resolve(fileName));
+    Path target = targetDir.resolve(fileName);
+    if (moveJobAtomically(sourceDir.resolve(fileName), target)) {
+      // the modification time records the completion, for the retention policies
+      Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+      return true;
+    } else {
+      return false;
+    }
   }
 
   /**
@@ -117,12 +159,35 @@ public final class SpoolManager {
    * @return {@code true} if the move was successful, {@code false} if the the job file does not
    *         exist in the 'processing' state.
    */
+  @Override
   public boolean fail(String queueName, String fileName) throws IOException {
     Path sourceDir = getPathForState(queueName, State.PROCESSING);
     Path targetDir = getPathForState(queueName, State.FAILED);
     return moveJobAtomically(sourceDir.resolve(fileName), targetDir.resolve(fileName));
   }
 
+  /**
+   * Moves the jobs in the 'processing' state of every queue back to the 'pending' state.
+   * <p>
+   * Transition: `processing` -> `pending`
+   *
+   * @throws IOException if a file system error occurs.
+   * @return The number of jobs that were moved.
+   */
+  @Override
+  public int recover() throws IOException {
+    int count = 0;
+    for (String queueName : getAllQueues()) {
+      Path targetDir = getPathForState(queueName, State.PENDING);
+      for (File file : discover(queueName, State.PROCESSING)) {
+        if (moveJobAtomically(file.toPath(), targetDir.resolve(file.getName()))) {
+          ++count;
+        }
+      }
+    }
+    return count;
+  }
+
   /**
    * Creates a hard link to a job currently in the 'processing' state of a source queue and places
    * the link in the 'pending' state of a target queue. This is the primary mechanism for fanning
@@ -138,6 +203,7 @@ public final class SpoolManager {
    *         exist in the 'processing' state, or the job already exists in the target queue in any
    *         state.
    */
+  @Override
   public boolean fanOut(String sourceQueueName, String fileName, String targetQueueName)
       throws IOException {
     Path sourceFile = getPathForState(sourceQueueName, State.PROCESSING).resolve(fileName);
@@ -148,6 +214,7 @@ public final class SpoolManager {
         .noneMatch(dir -> Files.exists(dir.resolve(fileName)))) {
       Files.createDirectories(linkTargetDir);
       Files.createLink(linkPath, sourceFile);
+      sync(List.of(), linkTargetDir);
       return true;
     } else {
       return false;
@@ -165,6 +232,7 @@ public final class SpoolManager {
    * @return {@code true} if the link was created, {@code false} if a file with the target name
    *         already exists in the default queue's pending directory.
    */
+  @Override
   public boolean enqueue(File sourceFile) throws IOException {
     if (!sourceFile.exists() || !sourceFile.isFile()) {
       throw new FileNotFoundException(
@@ -180,15 +248,79 @@ public final class SpoolManager {
     if (getQueueSubdirectories(DEFAULT_QUEUE)
         .noneMatch(dir -> Files.exists(dir.resolve(fileName)))
         && moveJobAtomically(sourceFile.toPath(), targetPath)) {
-      Path indexFilePath = spoolRoot.resolve(DEFAULT_QUEUE).resolve(INDEX_FILENAME);
-      Files.write(indexFilePath, List.of(fileName), StandardOpenOption.CREATE,
-          StandardOpenOption.APPEND);
+      index.append(fileName, durability == Durability.SYNC);
+      sync(List.of(targetPath), pendingDir);
+      compactIfDue();
       return true;
     } else {
       return false;
     }
   }
 
+  /**
+   * Enqueues a new job with the given contents into the default queue's 'pending' state. The
+   * contents are written to a temporary file in the spool root (which is ignored because it has an
+   * extension) and then moved atomically into place.
+   *
+   * @param fileName The unique filename of the job.
+   * @param data The contents of the job, in the spool file format.
+   * @throws IOException if an I/O error occurs.
+   * @return {@code true} if the job was enqueued, {@code false} if a job with the same name
+   *         already exists in the default queue.
+   */
+  @Override
+  public boolean write(String fileName, byte[] data) throws IOException {
+    if (getQueueSubdirectories(DEFAULT_QUEUE)
+        .anyMatch(dir -> Files.exists(dir.resolve(fileName)))) {
+      return false;
+    }
+
+    Path temp = spoolRoot.resolve(fileName + ".tmp");
+    Path pendingDir = getPathForState(DEFAULT_QUEUE, State.PENDING);
+    Path target = pendingDir.resolve(fileName);
+    Files.write(temp, data);
+    try {
+      moveJobAtomically(temp, target);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    index.append(fileName, durability == Durability.SYNC);
+    sync(List.of(target), pendingDir);
+    compactIfDue();
+    return true;
+  }
+
+  /**
+   * Forces the given files and the entries of the given directory to disk, according to the
+   * durability mode. In {@link Durability#GROUP} mode, this also flushes the index.
+   */
+  private void sync(List<Path> files, Path directory) throws IOException {
+    switch (durability) {
+      case SYNC:
+        for (Path file : files) {
+          forceFile(file);
+        }
+        forceDirectory(directory);
+        break;
+      case GROUP:
+        groupCommit.commit(files, List.of(directory));
+        break;
+      default:
+        break;
+    }
+  }
+
+  static void forceFile(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  static void forceDirectory(Path directory) throws IOException {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
 
   /**
    * Atomically moves a file from a source path to a target path, creating the target directory if
@@ -208,6 +340,26 @@ public final class SpoolManager {
     return true;
   }
 
+  /**
+   * Returns the file of a job in the given queue and state. The file is not required to exist.
+   *
+   * @param queueName The name of the queue where the job resides.
+   * @param state The state of the job.
+   * @param fileName The unique filename of the job.
+   */
+  @Override
+  public File getFile(String queueName, State state, String fileName) {
+    return getPathForState(queueName, state).resolve(fileName).toFile();
+  }
+
+  /**
+   * Returns the root directory of the spool.
+   */
+  @Override
+  public Path getRoot() {
+    return spoolRoot;
+  }
+
   /**
    * Constructs the full path for a given queue and state.
    */
@@ -215,12 +367,66 @@ public final class SpoolManager {
     return spoolRoot.resolve(queueName).resolve(state.getDirectoryName());
   }
 
-  public List<String> readIndex() throws IOException {
-    Path indexFilePath = spoolRoot.resolve(DEFAULT_QUEUE).resolve(INDEX_FILENAME);
-    if (Files.exists(indexFilePath)) {
-      return Files.readAllLines(indexFilePath);
-    } else {
-      return new ArrayList<>();
+  /**
+   * Reads the order in which jobs were enqueued into the default queue.
+   *
+   * @return A map from the filename of each job to its position in the index. If a filename was
+   *         enqueued more than once, its first position is retained.
+   * @throws IOException if a file system error occurs.
+   */
+  @Override
+  public Map<String, Integer> readIndex() throws IOException {
+    return index.read();
+  }
+
+  /**
+   * Drops from the index the entries of jobs that are no longer pending or processing in any
+   * queue, so that the cost of {@link #readIndex()} tracks the backlog instead of the lifetime
+   * traffic of the spool.
+   * <p>
+   * The live jobs are listed while holding the lock of the index, so that the jobs enqueued during
+   * the compaction are not dropped. A job that is not found by the listing, because it was moved
+   * while the directories were being listed, is looked up again before its entry is dropped.
+   *
+   * @throws IOException if a file system error occurs.
+   */
+  @Override
+  public void compactIndex() throws IOException {
+    synchronized (index) {
+      List<String> queues = getAllQueues();
+      Set<String> live = new HashSet<>();
+      for (State state : List.of(State.PENDING, State.PROCESSING)) {
+        for (String queueName : queues) {
+          Path dir = getPathForState(queueName, state);
+          if (Files.isDirectory(dir)) {
+            try (Stream<Path> stream = Files.list(dir)) {
+              stream.forEach(path -> live.add(path.getFileName().toString()));
+            }
+          }
+        }
+      }
+      index.compact(fileName -> live.contains(fileName) || isLive(queues, fileName));
+    }
+  }
+
+  private boolean isLive(List<String> queues, String fileName) {
+    for (String queueName : queues) {
+      for (State state : List.of(State.PROCESSING, State.PENDING)) {
+        if (Files.exists(getPathForState(queueName, state).resolve(fileName))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compacts the index if enough segments were sealed since the last compaction, so that it is
+   * compacted under sustained traffic as well.
+   */
+  private void compactIfDue() throws IOException {
+    if (index.isCompactionDue()) {
+      compactIndex();
     }
   }
 
@@ -228,26 +434,56 @@ public final class SpoolManager {
    * Discovers all jobs currently in the 'pending' state for a specific queue.
    *
    * @param queueName The name of the queue to scan.
-   * @return A stream of filenames for each pending job. The stream must be closed by the caller
-   *         (e.g., by using a try-with-resources block).
+   * @return A list of files for each pending job.
    * @throws IOException if a file system error occurs.
    */
+  @Override
   public List<File> discoverPending(String queueName) throws IOException {
-    Path pendingDir = getPathForState(queueName, State.PENDING);
-    if (!Files.isDirectory(pendingDir)) {
+    return discover(queueName, State.PENDING);
+  }
+
+  /**
+   * Discovers all jobs currently in the given state for a specific queue.
+   *
+   * @param queueName The name of the queue to scan.
+   * @param state The state of the jobs.
+   * @return A list of files for each job in the given state.
+   * @throws IOException if a file system error occurs.
+   */
+  @Override
+  public List<File> discover(String queueName, State state) throws IOException {
+    Path dir = getPathForState(queueName, state);
+    if (!Files.isDirectory(dir)) {
       return Collections.emptyList();
     }
-    return Files.list(pendingDir).map(path -> path.toFile()).toList();
+    try (Stream<Path> stream = Files.list(dir)) {
+      return stream.map(path -> path.toFile()).toList();
+    }
+  }
+
+  /**
+   * Deletes a job in the given queue and state.
+   *
+   * @param queueName The name of the queue where the job resides.
+   * @param state The state of the job.
+   * @param fileName The unique filename of the job to delete.
+   * @throws IOException if a file system error occurs.
+   * @return {@code true} if the job was deleted, {@code false} if the job file does not exist in
+   *         the given state.
+   */
+  @Override
+  public boolean delete(String queueName, State state, String fileName) throws IOException {
+    return Files.deleteIfExists(getPathForState(queueName, state).resolve(fileName));
   }
 
+  @Override
+  public byte[] read(String queueName, State state, String fileName) throws IOException {
+    return Files.readAllBytes(getPathForState(queueName, state).resolve(fileName));
+  }
 
-  public static List<File> sort(List<File> files, List<String> index) throws IOException {
-    record Pair(File file, int index) {};
-    return files.stream()
-        .map(f->new Pair(f, index.indexOf(f.getName())))
-        .filter(pair->pair.index>=0)
-        .sorted(Comparator.comparing(Pair::index))
-        .map(Pair::file).toList();
+  @Override
+  public long lastModified(String queueName, State state, String fileName) {
+    return getFile(queueName, state, fileName).lastModified();
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * Stores the jobs of the spool and their state within each queue.
+ * <p>
+ * Jobs are identified by their filename, and are represented by the {@link File} at which they
+ * would be located in a directory-based spool ({@code {root}/{queueName}/{state}/{fileName}}),
+ * whether or not such a file exists. The transitions of a job between states are atomic.
+ *
+ * @see SpoolManager
+ * @see SegmentSpool
+ * @see MemorySpool
+ */
+public interface SpoolStore {
+
+  /**
+   * Defines the valid states of a job and their corresponding directory names.
+   */
+  enum State {
+    PENDING("pending"), PROCESSING("processing"), PROCESSED("processed"), FAILED("failed");
+
+    @Getter
+    private final String directoryName;
+
+    State(String directoryName) {
+      this.directoryName = directoryName;
+    }
+
+  }
+
+  /**
+   * Returns the root directory of the spool, which is watched for new webhook files.
+   */
+  Path getRoot();
+
+  /**
+   * Enqueues a webhook file from the spool root into the default queue's 'pending' state. The
+   * file is removed from the spool root if it was enqueued.
+   *
+   * @throws FileNotFoundException if the sourceFile does not exist or is not a regular file.
+   * @return {@code true} if the job was enqueued, {@code false} if a job with the same name
+   *         already exists in the default queue.
+   */
+  boolean enqueue(File sourceFile) throws IOException;
+
+  /**
+   * Enqueues a new job with the given contents into the default queue's 'pending' state.
+   *
+   * @return {@code true} if the job was enqueued, {@code false} if a job with the same name
+   *         already exists in the default queue.
+   */
+  boolean write(String fileName, byte[] data) throws IOException;
+
+  /**
+   * Moves a job from the 'pending' state to the 'processing' state.
+   *
+   * @return {@code false} if the job is not pending in the given queue.
+   */
+  boolean claim(String queueName, String fileName) throws IOException;
+
+  /**
+   * Moves a job from the 'processing' state to the 'processed' state.
+   *
+   * @return {@code false} if the job is not processing in the given queue.
+   */
+  boolean complete(String queueName, String fileName) throws IOException;
+
+  /**
+   * Moves a job from the 'processing' state to the 'failed' state.
+   *
+   * @return {@code false} if the job is not processing in the given queue.
+   */
+  boolean fail(String queueName, String fileName) throws IOException;
+
+  /**
+   * Adds a job that is processing in the source queue to the 'pending' state of the target queue.
+   *
+   * @return {@code false} if the job is not processing in the source queue, or it already exists
+   *         in the target queue in any state.
+   */
+  boolean fanOut(String sourceQueueName, String fileName, String targetQueueName)
+      throws IOException;
+
+  /**
+   * Removes a job in the given queue and state.
+   *
+   * @return {@code false} if the job does not exist in the given state.
+   */
+  boolean delete(String queueName, State state, String fileName) throws IOException;
+
+  /**
+   * Moves the jobs that are in the 'processing' state of any queue back to the 'pending' state.
+   * This is called at startup, since such jobs were being processed when the previous process
+   * stopped, and must be processed again.
+   *
+   * @return the number of jobs that were moved.
+   */
+  int recover() throws IOException;
+
+  /**
+   * Discovers all jobs currently in the 'pending' state for a specific queue.
+   */
+  default List<File> discoverPending(String queueName) throws IOException {
+    return discover(queueName, State.PENDING);
+  }
+
+  /**
+   * Discovers all jobs currently in the given state for a specific queue.
+   */
+  List<File> discover(String queueName, State state) throws IOException;
+
+  /**
+   * Returns whether {@link #discover(String, State)} lists the jobs in the order in which they
+   * were enqueued, so that they do not need to be sorted according to {@link #readIndex()}.
+   */
+  default boolean isDiscoveryOrdered() {
+    return false;
+  }
+
+  /**
+   * Returns the file that represents a job in the given queue and state. The job is not required
+   * to exist.
+   */
+  File getFile(String queueName, State state, String fileName);
+
+  /**
+   * Reads the contents of a job in the given queue and state.
+   *
+   * @throws IOException if the job does not exist, or cannot be read.
+   */
+  byte[] read(String queueName, State state, String fileName) throws IOException;
+
+  /**
+   * Returns the time (in milliseconds since the epoch) at which a job in the given queue and state
+   * was last modified, or 0 if the job does not exist. For processed jobs, this is the time at
+   * which they were completed.
+   */
+  long lastModified(String queueName, State state, String fileName);
+
+  /**
+   * Reads the order in which jobs were enqueued into the default queue.
+   *
+   * @return A map from the filename of each job to its position in the index.
+   */
+  Map<String, Integer> readIndex() throws IOException;
+
+  /**
+   * Compacts the bookkeeping of the store, dropping the jobs that are no longer pending or
+   * processing in any queue.
+   */
+  void compactIndex() throws IOException;
+
+  /**
+   * Sorts the given jobs according to their position in the index. Jobs that are not present in
+   * the index are discarded.
+   *
+   * @param files The jobs to sort.
+   * @param index The index, as returned by {@link #readIndex()}.
+   * @return A new list with the jobs sorted by their position in the index.
+   */
+  static List<File> sort(List<File> files, Map<String, Integer> index) {
+    record Pair(File file, int index) {};
+    return files.stream()
+        .map(f -> new Pair(f, index.getOrDefault(f.getName(), -1)))
+        .filter(pair -> pair.index >= 0)
+        .sorted(Comparator.comparingInt(Pair::index))
+        .map(Pair::file).toList();
+  }
+
+}
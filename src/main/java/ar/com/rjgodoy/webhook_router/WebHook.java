@@ -16,76 +16,266 @@
 package ar.com.rjgodoy.webhook_router;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Supplier;
 import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+/**
+ * A webhook being processed.
+ * <p>
+ * Copies of a webhook share the headers and the payload tree with the original, and copy them on
+ * write: {@link #setHeader(String, String)} copies the headers, and
+ * {@link #getWritablePayload(JsonPath)} copies the objects along the path to the object that is
+ * about to be modified. The objects returned by {@link #getPayload()} must not be modified.
+ * <p>
+ * The payload of a webhook read from the spool may be parsed lazily, on first access.
+ */
 @Getter
-@RequiredArgsConstructor(access = AccessLevel.PUBLIC)
 public class WebHook {
 
   private final String requestUri;
-  private final List<Header> headers;
-  private final JSONObject payload;
+  private HeaderMap headers;
+  @Getter(AccessLevel.NONE)
+  private JSONObject payload;
   private final File file;
 
   public final Context context;
 
+  @Getter(AccessLevel.NONE)
+  private final Map<Object, Object> cache = new HashMap<>();
+
+  /** Whether the headers are shared with another webhook. */
+  @Getter(AccessLevel.NONE)
+  private boolean sharedHeaders;
+
+  /**
+   * The objects of the payload tree that were copied by this webhook, or {@code null} if the
+   * payload is not shared with another webhook.
+   */
+  @Getter(AccessLevel.NONE)
+  private Set<JSONObject> owned;
+
+  /** The contents of the job the payload was parsed from, or {@code null}. */
+  @Getter(AccessLevel.NONE)
+  private byte[] original;
+
+  /** The offset of the payload in the contents of the job. */
+  private int payloadOffset;
+
+  /** The length of the payload in the contents of the job. */
+  private int payloadLength;
+
+  /** Parses the payload on first access, or {@code null} if the payload is available. */
+  @Getter(AccessLevel.NONE)
+  private Supplier<JSONObject> parser;
+
+  /** Whether the payload was requested for writing. */
+  @Getter(AccessLevel.NONE)
+  private boolean payloadModified;
+
+  /**
+   * @param headers the headers of the webhook. A {@link HeaderMap} is used as is, other lists are
+   *        copied.
+   */
+  public WebHook(String requestUri, List<Header> headers, JSONObject payload, File file,
+      Context context) {
+    this.requestUri = requestUri;
+    this.headers = headers instanceof HeaderMap map ? map : new HeaderMap(headers);
+    this.payload = payload;
+    this.file = file;
+    this.context = context;
+  }
+
+  /**
+   * Creates a webhook whose payload is parsed when it is first accessed.
+   */
+  WebHook(String requestUri, HeaderMap headers, Supplier<JSONObject> parser, File file,
+      Context context) {
+    this(requestUri, headers, (JSONObject) null, file, context);
+    this.parser = parser;
+  }
+
   public WebHook(WebHook webhook) {
-    this(webhook.requestUri,
-        webhook.headers.stream().map(h -> new Header(h)).collect(Collectors.toList()),
-        new JSONObject(webhook.payload.toString()), webhook.file, new Context(webhook.context));
+    this(webhook.requestUri, webhook.headers, webhook.getPayload(), webhook.file,
+        new Context(webhook.context));
+    original = webhook.original;
+    payloadOffset = webhook.payloadOffset;
+    payloadLength = webhook.payloadLength;
+    payloadModified = webhook.payloadModified;
+    webhook.share();
+    share();
+  }
+
+  private void share() {
+    sharedHeaders = true;
+    owned = Collections.newSetFromMap(new IdentityHashMap<>());
   }
 
   public WebHook(Context context) {
-    this(null, new ArrayList<>(), new JSONObject(), null, new Context(context));
+    this(null, new HeaderMap(), new JSONObject(), null, new Context(context));
   }
 
   public Optional<String> getHeader(String name) {
-    return headers.stream().filter(Header.is(name)).findFirst().map(Header::value);
+    return Optional.ofNullable(headers.getValue(name));
   }
 
   public void setHeader(String name, String value) {
-    headers.stream().filter(Header.is(name)).findFirst().ifPresentOrElse(
-        header -> header.value(value),
-        () -> headers.add(new Header(name,value)));
+    if (sharedHeaders) {
+      headers = headers.copy();
+      sharedHeaders = false;
+    }
+    headers.setValue(name, value);
+  }
+
+  /**
+   * Returns the payload, parsing it if needed.
+   *
+   * @throws MalformedPayloadException if the payload is parsed lazily and is not valid.
+   */
+  public JSONObject getPayload() {
+    if (parser != null) {
+      try {
+        payload = parser.get();
+      } catch (JSONException e) {
+        throw new MalformedPayloadException(e);
+      } finally {
+        parser = null;
+      }
+    }
+    return payload;
+  }
+
+  /**
+   * Returns whether the payload has been parsed.
+   */
+  boolean isPayloadParsed() {
+    return parser == null;
+  }
+
+  /**
+   * Returns the payload, so that its properties can be modified.
+   */
+  public JSONObject getWritablePayload() {
+    payloadModified = true;
+    getPayload();
+    if (owned != null && !owned.contains(payload)) {
+      payload = copy(payload);
+    }
+    return payload;
   }
 
-  private Object getPayload(String expansion) {
-    String ss[] = expansion.split("\\.");
-    JSONObject obj = payload;
-    int n = ss.length - 1;
-    for (int i = 0; i < n; i++) {
-      if (!obj.has(ss[i])) {
+  /**
+   * Returns the payload object at the given path, so that its properties can be modified.
+   *
+   * @return the object, or {@code null} if the path does not resolve to an object.
+   */
+  public JSONObject getWritablePayload(JsonPath path) {
+    if (path.scope != JsonPath.Scope.PAYLOAD) {
+      throw new IllegalArgumentException(path.toString());
+    }
+
+    JSONObject obj = getWritablePayload();
+    for (String segment : path.segments) {
+      if (!(obj.opt(segment) instanceof JSONObject child)) {
         return null;
       }
-      obj = obj.getJSONObject(ss[i]);
+      if (owned != null && !owned.contains(child)) {
+        child = copy(child);
+        obj.put(segment, child);
+      }
+      obj = child;
+    }
+    return obj;
+  }
+
+  /**
+   * Records the bytes of the job from which the payload was parsed.
+   */
+  void setOriginalPayload(byte[] data, int offset, int length) {
+    original = data;
+    payloadOffset = offset;
+    payloadLength = length;
+  }
+
+  /**
+   * Returns whether the payload may differ from the bytes of the job it was parsed from, i.e.
+   * whether it was requested for writing, or was not parsed from a job at all.
+   */
+  public boolean isPayloadModified() {
+    return payloadModified || original == null;
+  }
+
+  /**
+   * Returns the contents of the job from which the payload was parsed. The payload spans
+   * {@link #getPayloadLength()} bytes starting at {@link #getPayloadOffset()}. The array is shared,
+   * and must not be modified.
+   *
+   * @throws IllegalStateException if the {@linkplain #isPayloadModified() payload was modified}.
+   */
+  public byte[] getOriginal() {
+    if (isPayloadModified()) {
+      throw new IllegalStateException("The payload was modified");
     }
-    if (!obj.has(ss[n])) {
-      return null;
-    } else {
-      return obj.get(ss[n]);
+    return original;
+  }
+
+  // a shallow copy, whose children are still shared
+  private JSONObject copy(JSONObject obj) {
+    JSONObject copy = new JSONObject();
+    for (String key : obj.keySet()) {
+      copy.put(key, obj.opt(key));
     }
+    owned.add(copy);
+    return copy;
   }
 
   public Object resolve(String expression) {
-    switch (expression.charAt(0)) {
-      case '$':
-        return getPayload(expression.substring(1));
-      case '%':
-        return getContext().get(expression.substring(1));
+    return resolve(JsonPath.compile(expression));
+  }
+
+  /**
+   * Resolves a precompiled path against this webhook.
+   *
+   * @return the resolved value, or {@code null} if the path is not present.
+   */
+  public Object resolve(JsonPath path) {
+    switch (path.scope) {
+      case PAYLOAD:
+        return path.walk(getPayload());
+      case CONTEXT:
+        return context != null ? context.get(path.segments) : null;
       default:
-        return getHeader(expression).orElse(null);
+        return getHeader(path.segments[0]).orElse(null);
     }
   }
 
-  public void enqueue(String targetQueueName) {
-    context.fanOut(file.getParentFile().getName(), file.getName(), targetQueueName);
+  /**
+   * Returns a value that was cached for this webhook, or {@code null}.
+   */
+  public Object getCached(Object key) {
+    return cache.get(key);
+  }
+
+  /**
+   * Caches a value for this webhook. Cached values are not shared with copies of the webhook.
+   */
+  public void putCached(Object key, Object value) {
+    cache.put(key, value);
+  }
+
+  public boolean enqueue(String targetQueueName) {
+    // the file is located at {spool}/{queueName}/{state}/{fileName}
+    String queueName = file.getParentFile().getParentFile().getName();
+    return context.fanOut(queueName, file.getName(), targetQueueName);
   }
 
 }
@@ -0,0 +1,452 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static ar.com.rjgodoy.webhook_router.filter.Configuration.DEFAULT_QUEUE;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import ar.com.rjgodoy.webhook_router.filter.ExitActionException;
+import ar.com.rjgodoy.webhook_router.filter.QueueDecl;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes the pending jobs of each queue on a dedicated worker thread.
+ * <p>
+ * Jobs are processed in FIFO order (as given by the spool index) within a queue, while
+ * independent queues progress in parallel, so that a slow destination only stalls its own queue.
+ * If the queue is {@linkplain QueueDecl#isOrdered() ordered by a key}, jobs are claimed in FIFO
+ * order and then distributed among several lanes according to their key, so that jobs with the
+ * same key are serialized while different keys are processed concurrently.
+ * <p>
+ * When a worker runs out of jobs, the spool is scanned again in order to pick up the jobs that
+ * were fanned out to other queues. The throughput of each queue is reported when it runs out of
+ * jobs, at most once every {@link #REPORT_INTERVAL}, and when the scheduler is closed.
+ */
+final class WorkerScheduler implements AutoCloseable {
+
+  static final int DEFAULT_LANES = 8;
+
+  /** The minimum interval between compactions of the spool index when the queues run idle. */
+  static final long COMPACT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+  /** The minimum interval between throughput reports of a queue. */
+  static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(60);
+
+  private final SpoolStore spool;
+
+  private final Context context;
+
+  private final boolean dry;
+
+  private final int lanes;
+
+  /** Enforces the retention policies, or {@code null} during a dry run. */
+  private final RetentionSweeper sweeper;
+
+  private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+
+  /** The contents of the jobs that were received in memory and have not been claimed yet. */
+  private final Map<String, byte[]> received = new ConcurrentHashMap<>();
+
+  /** The number of jobs that were scheduled and have not been processed yet. */
+  private int inFlight;
+
+  /** The time of the last compaction, as given by {@link System#nanoTime()}. */
+  private long lastCompacted = System.nanoTime() - COMPACT_INTERVAL;
+
+  WorkerScheduler(SpoolStore spool, Context context, boolean dry) {
+    this(spool, context, dry, DEFAULT_LANES);
+  }
+
+  /**
+   * @param lanes the number of lanes of each ordered queue.
+   */
+  WorkerScheduler(SpoolStore spool, Context context, boolean dry, int lanes) {
+    if (lanes < 1) {
+      throw new IllegalArgumentException("lanes must be positive");
+    }
+    this.spool = spool;
+    this.context = context;
+    this.dry = dry;
+    this.lanes = lanes;
+    sweeper = dry ? null : new RetentionSweeper(spool, context.getRules().getQueues());
+  }
+
+  private record Job(File file, WebHook webhook) {}
+
+  private final class Worker {
+
+    private final QueueDecl queue;
+
+    /** Whether the payload must be parsed, or it can be left for the first access. */
+    private final boolean needsPayload;
+
+    /** Claims the jobs in FIFO order, and processes them unless the queue is ordered. */
+    private final ExecutorService executor;
+
+    /** Processes the jobs of an ordered queue, or {@code null} if the queue is not ordered. */
+    private final ExecutorService[] lanes;
+
+    /** The names of the jobs that were submitted to this worker and have not been processed. */
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+
+    /** The number of jobs that were submitted to the executor and have not been processed. */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /** The number of jobs processed since the last report. */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /** The time at which the current batch started. */
+    private volatile long start;
+
+    /** The time spent processing the batches that were drained since the last report. */
+    private long busy;
+
+    /** The time of the last report. */
+    private long lastReport = System.nanoTime();
+
+    Worker(QueueDecl queue) {
+      this.queue = queue;
+      needsPayload = queue.needsPayload();
+      String name = "queue-" + queue.getName();
+      executor = Executors.newSingleThreadExecutor(r -> new Thread(r, name));
+      if (queue.isOrdered()) {
+        lanes = new ExecutorService[WorkerScheduler.this.lanes];
+        for (int i = 0; i < lanes.length; i++) {
+          String laneName = name + "-" + i;
+          lanes[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, laneName));
+        }
+      } else {
+        lanes = null;
+      }
+    }
+
+    boolean submit(File file) {
+      if (!scheduled.add(file.getName())) {
+        return false;
+      }
+      acquire();
+      if (pending.getAndIncrement() == 0) {
+        start = System.nanoTime();
+      }
+      executor.execute(() -> dispatch(file));
+      return true;
+    }
+
+    private void dispatch(File file) {
+      boolean done = true;
+      try {
+        Job job = claim(queue.getName(), file, needsPayload);
+        if (job == null) {
+          return;
+        }
+        if (lanes != null && job.webhook != null) {
+          String key;
+          try {
+            key = queue.getOrderingKey(job.webhook);
+          } catch (RuntimeException e) {
+            // the job was claimed, and it must not be left in processing
+            System.err.println("(" + job.file + ") " + e);
+            process(queue.getName(), new Job(job.file, null));
+            return;
+          }
+          int lane = Math.floorMod(Objects.hashCode(key), lanes.length);
+          lanes[lane].execute(() -> run(job));
+          done = false;
+        } else {
+          process(queue.getName(), job);
+        }
+      } catch (IOException | RuntimeException e) {
+        System.err.println("(" + file + ") " + e);
+      } finally {
+        if (done) {
+          done(file);
+        }
+      }
+    }
+
+    private void run(Job job) {
+      try {
+        process(queue.getName(), job);
+      } catch (IOException | RuntimeException e) {
+        System.err.println("(" + job.file + ") " + e);
+      } finally {
+        done(job.file);
+      }
+    }
+
+    private void done(File file) {
+      count.incrementAndGet();
+      if (!dry) {
+        // during a dry run the job remains pending, and it must not be scheduled again
+        scheduled.remove(file.getName());
+      }
+      if (pending.decrementAndGet() == 0) {
+        drained();
+        reschedule();
+      }
+      release();
+    }
+
+    private synchronized void drained() {
+      long now = System.nanoTime();
+      busy += now - start;
+      if (now - lastReport >= REPORT_INTERVAL) {
+        report(now);
+      }
+    }
+
+    private synchronized void report(long now) {
+      int count = this.count.getAndSet(0);
+      if (count > 0) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(busy);
+        double rate = count * 1000.0 / Math.max(elapsed, 1);
+        System.out.println(String.format("[%s] processed %d webhooks in %d ms (%.1f/s)",
+            queue.getName(), count, elapsed, rate));
+      }
+      busy = 0;
+      lastReport = now;
+    }
+
+    void shutdown() throws InterruptedException {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+      if (lanes != null) {
+        for (ExecutorService lane : lanes) {
+          lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+          lane.awaitTermination(1, TimeUnit.MINUTES);
+        }
+      }
+      report(System.nanoTime());
+    }
+
+  }
+
+  /**
+   * Schedules the pending jobs of all the declared queues. Jobs that are already scheduled are
+   * skipped.
+   *
+   * @return the number of jobs that were scheduled.
+   * @throws IOException if a file system error occurs.
+   */
+  synchronized int schedule() throws IOException {
+    int count = 0;
+    Map<String, Integer> index = spool.isDiscoveryOrdered() ? null : spool.readIndex();
+    for (QueueDecl queue : context.getRules().getQueues()) {
+      List<File> files = spool.discoverPending(queue.getName());
+      if (index != null) {
+        files = SpoolStore.sort(files, index);
+      }
+      for (File file : files) {
+        if (workers.computeIfAbsent(queue.getName(), name -> new Worker(queue)).submit(file)) {
+          ++count;
+        }
+      }
+    }
+    if (inFlight == 0) {
+      compact(false);
+    }
+    return count;
+  }
+
+  /**
+   * Writes a new job into the default queue and schedules it. The contents are kept in memory, so
+   * that they are not read back from the spool.
+   *
+   * @param data the contents of the job, in the spool file format.
+   * @return the name of the job, or {@code null} if a job with the same name already exists.
+   * @throws IOException if the job could not be written.
+   */
+  String receive(byte[] data) throws IOException {
+    String fileName = UUID.randomUUID().toString();
+    if (!spool.write(fileName, data)) {
+      return null;
+    }
+    submit(fileName, data);
+    return fileName;
+  }
+
+  /**
+   * Schedules a job that was just written into the default queue, whose contents are already in
+   * memory, so that they are not read back from the spool.
+   *
+   * @return whether the job was scheduled.
+   */
+  synchronized boolean submit(String fileName, byte[] data) {
+    QueueDecl queue = context.getRules().getQueue(DEFAULT_QUEUE);
+    File file = spool.getFile(DEFAULT_QUEUE, State.PENDING, fileName);
+    received.put(fileName, data);
+    if (workers.computeIfAbsent(queue.getName(), name -> new Worker(queue)).submit(file)) {
+      return true;
+    } else {
+      received.remove(fileName);
+      return false;
+    }
+  }
+
+  private void reschedule() {
+    try {
+      schedule();
+    } catch (IOException e) {
+      System.err.println("(" + spool.getRoot() + ") " + e.getMessage());
+    }
+  }
+
+  private synchronized void acquire() {
+    ++inFlight;
+  }
+
+  private synchronized void release() {
+    if (--inFlight == 0) {
+      if (compact(false)) {
+        sweep();
+      }
+      notifyAll();
+    }
+  }
+
+  /**
+   * Compacts the spool index, unless it was compacted recently. Queues that drain one job at a
+   * time would otherwise compact the index (and sweep the retained jobs) after every job.
+   * <p>
+   * Must be called while holding the lock, so that no job is scheduled during the compaction.
+   *
+   * @param force whether to compact the index even if it was compacted recently.
+   * @return whether the index was compacted.
+   */
+  private boolean compact(boolean force) {
+    long now = System.nanoTime();
+    if (!force && now - lastCompacted < COMPACT_INTERVAL) {
+      return false;
+    }
+    lastCompacted = now;
+    if (!dry) {
+      try {
+        spool.compactIndex();
+      } catch (IOException e) {
+        System.err.println("(" + spool.getRoot() + ") " + e.getMessage());
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Removes the processed jobs that are no longer retained by their queues.
+   */
+  void sweep() {
+    if (sweeper != null) {
+      sweeper.sweep();
+    }
+  }
+
+  /**
+   * Waits until all the scheduled jobs (including those fanned out while waiting) have been
+   * processed.
+   */
+  synchronized void awaitIdle() throws InterruptedException {
+    while (inFlight > 0) {
+      wait();
+    }
+  }
+
+  /**
+   * Claims a pending job and parses its webhook.
+   *
+   * @param parsePayload whether to parse the payload now, rather than on first access.
+   * @return the claimed job, or {@code null} if the job was no longer pending.
+   */
+  private Job claim(String queueName, File file, boolean parsePayload) throws IOException {
+    byte[] data = queueName.equals(DEFAULT_QUEUE) ? received.remove(file.getName()) : null;
+    State state = State.PENDING;
+    if (!dry) {
+      if (!spool.claim(queueName, file.getName())) {
+        return null;
+      }
+      state = State.PROCESSING;
+      file = spool.getFile(queueName, state, file.getName());
+    }
+    if (data == null) {
+      try {
+        data = spool.read(queueName, state, file.getName());
+      } catch (IOException e) {
+        System.err.println("(" + file + ") " + e.getMessage());
+        return new Job(file, null);
+      }
+    }
+    return new Job(file, App.parseWebHook(context, file, data, parsePayload));
+  }
+
+  private void process(String queueName, Job job) throws IOException {
+    WebHook webhook = job.webhook;
+    boolean failed = false;
+    if (webhook != null) {
+      try {
+        context.getRules().call(queueName, webhook);
+      } catch (ExitActionException e) {
+        // done
+      } catch (MalformedPayloadException e) {
+        System.err.println("(" + job.file + ") " + e.getMessage());
+        failed = true;
+      } catch (RuntimeException e) {
+        // a bug in the rules must not leave the job in processing
+        System.err.println("(" + job.file + ") " + e);
+        failed = true;
+      } finally {
+        webhook.context.awaitDeferred();
+      }
+    }
+
+    String fileName = job.file.getName();
+    if (dry) {
+      // the spool is not modified during a dry run
+    } else if (webhook != null && !failed && webhook.context.isConsumed()) {
+      if (spool.complete(queueName, fileName)) {
+        sweeper.completed(queueName, fileName);
+      }
+    } else {
+      spool.fail(queueName, fileName);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      for (Worker worker : workers.values()) {
+        worker.shutdown();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // the last batches may have been drained too soon after a compaction
+    synchronized (this) {
+      compact(true);
+      sweep();
+    }
+  }
+
+}
@@ -65,6 +65,13 @@ final class CaseDirective implements Directive {
     return Result.NULL;
   }
 
+  @Override
+  public boolean needsPayload() {
+    return whenClauses.stream()
+        .anyMatch(when -> when.predicate.needsPayload() || when.actions.needsPayload())
+        || elseClause != null && elseClause.actions.needsPayload();
+  }
+
   @Override
   public String toString() {
     String w = ToStringHelper.pad(whenClauses.stream().map(Object::toString).collect(Collectors.joining("")));
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending requests to a destination that keeps failing.
+ * <p>
+ * The breaker is closed while the destination is healthy. After a number of consecutive failures
+ * (connection errors or server errors) it opens, and requests fail fast without being sent. Once
+ * the cool-down has elapsed, the breaker becomes half-open and lets a single probe through: if the
+ * probe succeeds the breaker closes, otherwise it opens again for another cool-down. State
+ * transitions are logged.
+ * <p>
+ * Breakers are shared by all the HTTP actions, and keyed by the authority of the URI.
+ */
+public final class CircuitBreaker {
+
+  /** The default number of consecutive failures that open the breaker. */
+  public static final int DEFAULT_THRESHOLD = 5;
+
+  /** The default time that the breaker stays open before a probe is sent. */
+  public static final Duration DEFAULT_COOLDOWN = Duration.ofSeconds(30);
+
+  enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private static volatile int defaultThreshold = DEFAULT_THRESHOLD;
+
+  private static volatile Duration defaultCooldown = DEFAULT_COOLDOWN;
+
+  private static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+  private final String name;
+
+  private final int threshold;
+
+  private final long cooldown;
+
+  private final LongSupplier clock;
+
+  private State state = State.CLOSED;
+
+  private int failures;
+
+  private long openedAt;
+
+  private boolean probing;
+
+  /**
+   * @param threshold the number of consecutive failures that open the breaker.
+   * @param cooldown the time that the breaker stays open before a probe is sent.
+   * @param clock the source of the current time, in nanoseconds.
+   */
+  CircuitBreaker(String name, int threshold, Duration cooldown, LongSupplier clock) {
+    this.name = name;
+    this.threshold = threshold;
+    this.cooldown = cooldown.toNanos();
+    this.clock = clock;
+  }
+
+  /**
+   * Configures the breakers. This method must be called before any HTTP action is executed.
+   *
+   * @param threshold the number of consecutive failures that open a breaker.
+   * @param cooldown the time that a breaker stays open before a probe is sent.
+   */
+  public static void configure(int threshold, Duration cooldown) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("threshold must be positive");
+    }
+    if (!breakers.isEmpty()) {
+      throw new IllegalStateException("Circuit breakers are already in use");
+    }
+    defaultThreshold = threshold;
+    defaultCooldown = cooldown;
+  }
+
+  /**
+   * Returns the shared breaker for the authority of the given URI.
+   */
+  static CircuitBreaker get(URI uri) {
+    return breakers.computeIfAbsent(uri.getRawAuthority().toLowerCase(),
+        name -> new CircuitBreaker(name, defaultThreshold, defaultCooldown, System::nanoTime));
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * Returns whether a request may be sent. If this method returns {@code true}, the outcome of
+   * the request must be reported through {@link #success()}, {@link #failure()} or
+   * {@link #cancel()}.
+   */
+  synchronized boolean tryAcquire() {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (clock.getAsLong() - openedAt < cooldown) {
+          return false;
+        }
+        transition(State.HALF_OPEN, "cool-down elapsed, sending probe");
+        probing = true;
+        return true;
+      case HALF_OPEN:
+      default:
+        if (probing) {
+          return false;
+        }
+        probing = true;
+        return true;
+    }
+  }
+
+  /** Reports that the destination responded. */
+  synchronized void success() {
+    failures = 0;
+    probing = false;
+    if (state != State.CLOSED) {
+      transition(State.CLOSED, "destination recovered");
+    }
+  }
+
+  /** Reports that the request failed because of a connection or server error. */
+  synchronized void failure() {
+    probing = false;
+    ++failures;
+    if (state == State.HALF_OPEN || state == State.CLOSED && failures >= threshold) {
+      openedAt = clock.getAsLong();
+      transition(State.OPEN, failures + " consecutive failures");
+    }
+  }
+
+  /** Reports that the request was abandoned without an outcome. */
+  synchronized void cancel() {
+    probing = false;
+  }
+
+  private void transition(State state, String reason) {
+    this.state = state;
+    System.err.println("[CIRCUIT] " + name + " " + state + " (" + reason + ")");
+  }
+
+  @Override
+  public synchronized String toString() {
+    return name + " " + state;
+  }
+
+}
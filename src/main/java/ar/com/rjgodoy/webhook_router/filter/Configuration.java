@@ -24,8 +24,9 @@ public class Configuration {
 
     List<Directive> directives =
         configuration.getDirectives().stream().filter(isQueueDecl.negate()).toList();
-    if (!queues.containsKey(DEFAULT_QUEUE)) {
-      declare(new QueueDecl(DEFAULT_QUEUE, DirectiveParser.wrap(directives)));
+    if (queues.get(DEFAULT_QUEUE) == null) {
+      Directive body = DirectiveParser.wrap(directives);
+      declare(new QueueDecl(DEFAULT_QUEUE, body != null ? body : new OrSequence(List.of())));
     } else if (!directives.isEmpty()) {
       throw new RuntimeParserException(1,
           "The definition of 'QUEUE default' requires the entire configuration to contain only queue declarations");
@@ -37,6 +38,13 @@ public class Configuration {
     queues.put(queue.getName(), queue);
   }
 
+  /**
+   * Returns the declaration of a queue, or {@code null} if there is no such queue.
+   */
+  public QueueDecl getQueue(String name) {
+    return queues.get(name);
+  }
+
   public Collection<QueueDecl> getQueues() {
     return queues.values();
   }
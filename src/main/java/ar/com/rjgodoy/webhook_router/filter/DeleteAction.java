@@ -16,11 +16,7 @@
 package ar.com.rjgodoy.webhook_router.filter;
 
 import ar.com.rjgodoy.webhook_router.WebHook;
-import java.io.IOException;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -46,17 +42,17 @@ final class DeleteAction extends HttpMethodAction {
   @Getter(AccessLevel.PROTECTED)
   private final Directive body;
 
+  @Getter(AccessLevel.PROTECTED)
+  private final RateLimit rate;
+
   @Override
   protected String getMethodName() {
     return "DELETE";
   }
 
   @Override
-  protected HttpResponse<String> send(HttpClient client, HttpRequest.Builder request,
-      WebHook webhook)
-      throws IOException, InterruptedException {
+  protected void setMethod(HttpRequest.Builder request, WebHook webhook) {
     request.DELETE();
-    return client.send(request.build(), BodyHandlers.ofString());
   }
 
 }
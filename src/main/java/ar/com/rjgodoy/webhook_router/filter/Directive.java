@@ -21,4 +21,12 @@ public interface Directive {
 
   public Result apply(WebHook webhook);
 
+  /**
+   * Returns whether applying this directive may read the payload of the webhook. Directives that
+   * cannot tell must return {@code true}.
+   */
+  public default boolean needsPayload() {
+    return true;
+  }
+
 }
@@ -20,10 +20,15 @@ import ar.com.rjgodoy.webhook_router.filter.CaseDirective.ElseClause;
 import ar.com.rjgodoy.webhook_router.filter.CaseDirective.WhenClause;
 import ar.com.rjgodoy.webhook_router.filter.HttpMethodAction.HttpMethodActionBuilder;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import lombok.NonNull;
@@ -36,6 +41,15 @@ public class DirectiveParser {
   private String next;
   private boolean eof;
 
+  // the roots of the paths that the configuration may write, and the expansions that read them
+  private final Set<String> localNames = new HashSet<>();
+  private final Set<String> variableNames = new HashSet<>();
+  private final Set<String> payloadNames = new HashSet<>();
+  private final List<MacroExpansion> expansions = new ArrayList<>();
+
+  // the rates declared for each limiter name
+  private final Map<String, RateLimit> namedRates = new HashMap<>();
+
   public DirectiveParser(Iterator<String> iterator) {
     this.iterator = iterator;
   }
@@ -155,6 +169,9 @@ public class DirectiveParser {
     if (configuration == null) {
       throw new RuntimeParserException(lineNumber, "Expected directive");
     }
+    for (MacroExpansion expansion : expansions) {
+      expansion.classify(localNames, variableNames, payloadNames);
+    }
     return new Configuration((OrSequence) configuration);
   }
 
@@ -395,11 +412,19 @@ public class DirectiveParser {
   }
 
   Directive scanQueueDecl() {
-    // queue-decl = "QUEUE" <name> [retention-policies] group-directive
+    // queue-decl = "QUEUE" <name> ["ORDERED" "BY" macro-token] [retention-policies] group-directive
     try {
       if (skip("QUEUE")) {
         String name = token();
 
+        MacroString orderedBy = null;
+        if (skip("ORDERED")) {
+          if (!skip("BY")) {
+            throw new RuntimeParserException(lineNumber, "Expected ORDERED BY <macro-token>");
+          }
+          orderedBy = parseMacroToken();
+        }
+
         List<Object> retentionPolicies = scanRetentionPolicies();
         RetentionTask maxTasks = null;
         RetentionDays maxDays = null;
@@ -434,7 +459,7 @@ public class DirectiveParser {
         if (body == null) {
           throw new RuntimeParserException(lineNumber, "Expected queue body");
         }
-        return new QueueDecl(name, maxTasks, maxDays, combinatorString, body);
+        return new QueueDecl(name, orderedBy, maxTasks, maxDays, combinatorString, body);
       }
       return null;
     } catch (RuntimeParserException e) {
@@ -503,7 +528,9 @@ public class DirectiveParser {
                 throw new RuntimeParserException(lineNumber,
                     "Illegal macro-expansion ${" + str + "}");
               }
-              parts.add(new MacroExpansion(str));
+              MacroExpansion expansion = new MacroExpansion(str);
+              expansions.add(expansion);
+              parts.add(expansion);
               begin = ++i;
               continue;
             default:
@@ -615,10 +642,12 @@ public class DirectiveParser {
           skip("LOG");
           return parseLogAction();
         case "POST", "GET", "DELETE": {
-          // action = <method> <macro-string> ["INTO" <token>] ["WITH {" and-sequence "}"]
+          // action = <method> <macro-string> ["INTO" <token>] ["RATE" <rate> ["AS" <name>]]
+          // ["WITH {" and-sequence "}"]
           skip(line);
           MacroString location = parseMacroToken();
           String into = null;
+          RateLimit rate = null;
           Directive body = null;
           while (next != null) {
             if (skip("INTO")) {
@@ -626,6 +655,14 @@ public class DirectiveParser {
                 throw new RuntimeParserException(this.lineNumber, "Duplicate clause INTO");
               }
               into = token();
+              declareWrite(into.startsWith("$") ? into : "$" + into);
+              continue;
+            }
+            if (skip("RATE")) {
+              if (rate != null) {
+                throw new RuntimeParserException(this.lineNumber, "Duplicate clause RATE");
+              }
+              rate = parseRateLimit();
               continue;
             }
             if (skip("WITH")) {
@@ -646,7 +683,8 @@ public class DirectiveParser {
             case "DELETE" -> DeleteAction.builder();
             default -> throw new AssertionError();
           };
-          return builder.macro(location).into(into).body(body).lineNumber(lineNumber).build();
+          return builder.macro(location).into(into).rate(rate).body(body).lineNumber(lineNumber)
+              .build();
         }
         case "REENTER": {
           // action = "REENTER" ["COPY"]
@@ -735,6 +773,7 @@ public class DirectiveParser {
     if (body == null) {
       throw new RuntimeParserException(lineNumber, "Expected FOR variablce IN <json-path> { ... }");
     }
+    localNames.add(variable);
     return new ForAction(lineNumber, variable, expression, body);
   }
 
@@ -770,6 +809,7 @@ public class DirectiveParser {
           case "array":;
           case "object":
             next();
+            declareWrite(s);
             return new SetPayloadAction(lineNumber, s, type, macro);
           default:
             throw new RuntimeParserException(lineNumber,
@@ -781,6 +821,51 @@ public class DirectiveParser {
     throw new RuntimeParserException(lineNumber, "Expected <SET action>");
   }
 
+  private void declareWrite(String path) {
+    String root = path.substring(path.startsWith("%%") ? 2 : 1).split("\\.")[0];
+    if (path.startsWith("%%")) {
+      localNames.add(root);
+    } else if (path.startsWith("%")) {
+      variableNames.add(root);
+    } else {
+      payloadNames.add(root);
+    }
+  }
+
+  private final static Pattern RATE_PATTERN = Pattern.compile("([1-9]\\d*)/([smh])");
+
+  private RateLimit parseRateLimit() {
+    // rate = 1*DIGIT "/" ("s" / "m" / "h") ["AS" <name>]
+    var m = RATE_PATTERN.matcher(token());
+    if (!m.matches()) {
+      throw new RuntimeParserException(lineNumber, "Expected RATE <number>/(s|m|h)");
+    }
+    int permits;
+    try {
+      permits = Integer.parseInt(m.group(1));
+    } catch (NumberFormatException e) {
+      throw new RuntimeParserException(lineNumber, "Expected RATE <number>/(s|m|h)");
+    }
+    TimeUnit unit = switch (m.group(2)) {
+      case "s" -> TimeUnit.SECONDS;
+      case "m" -> TimeUnit.MINUTES;
+      default -> TimeUnit.HOURS;
+    };
+    String name = null;
+    if (next != null && skip("AS")) {
+      name = token();
+    }
+    RateLimit rate = new RateLimit(permits, unit, name);
+    if (name != null) {
+      RateLimit declared = namedRates.putIfAbsent(name, rate);
+      if (declared != null && !declared.equals(rate)) {
+        throw new RuntimeParserException(lineNumber,
+            "Conflicting rate for " + name + ", already declared as " + declared);
+      }
+    }
+    return rate;
+  }
+
   private Directive scanCase() {
     int lineNumber = this.lineNumber;
     try {
@@ -828,13 +913,49 @@ public class DirectiveParser {
     } else if (skip("OR")) {
       combinator = "OR";
     } else {
+      assertNoRetentionToken(
+          "after retention policy. Expected 'AND', 'OR', or start of queue body '{'.");
       return policies;
     }
 
+    policies.add(combinator);
     policies.add(parseRetentionPolicy());
+
+    if (isRetentionCombinator(peekToken())) {
+      throw new RuntimeParserException(lineNumber, "Unexpected token '" + peekToken()
+          + "' after second retention policy. Maximum two policies allowed.");
+    }
+    assertNoRetentionToken("after retention policy. Expected start of queue body '{'.");
     return policies;
   }
 
+  private static final Set<String> RESERVED_WORDS = Set.of("AND", "OR", "LAST", "DAYS",
+      "QUEUE", "PROCEDURE", "CASE", "WHEN", "THEN", "ELSE", "ESAC", "CALL", "DROP", "EXIT",
+      "ENQUEUE", "POST", "GET", "DELETE", "REENTER", "SET", "LOG");
+
+  private static boolean isRetentionCombinator(String token) {
+    return token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR");
+  }
+
+  // a numeric or reserved token where the queue body is expected is reported as misplaced
+  private void assertNoRetentionToken(String message) {
+    String token = peekToken();
+    if (token.chars().allMatch(Character::isDigit) && !token.isEmpty()
+        || RESERVED_WORDS.contains(token.toUpperCase())) {
+      throw new RuntimeParserException(lineNumber, "Unexpected token '" + token + "' " + message);
+    }
+  }
+
+  // returns the next token without consuming it, or an empty string
+  private String peekToken() {
+    String s = scan().strip();
+    int i = 0;
+    while (i < s.length() && !Character.isWhitespace(s.charAt(i)) && s.charAt(i) != '{') {
+      i++;
+    }
+    return s.substring(0, i);
+  }
+
   private Object parseRetentionPolicy() {
     int currentLine = lineNumber;
 
@@ -27,6 +27,11 @@ final class DropAction implements Directive {
     return Result.NULL;
   }
 
+  @Override
+  public boolean needsPayload() {
+    return false;
+  }
+
   @Override
   public String toString() {
     return "DROP";
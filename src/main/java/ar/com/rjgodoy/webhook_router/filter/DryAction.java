@@ -29,6 +29,11 @@ final class DryAction implements Directive {
     return Result.NULL;
   }
 
+  @Override
+  public boolean needsPayload() {
+    return false;
+  }
+
   @Override
   public String toString() {
     return "DRY";
@@ -31,8 +31,15 @@ public class EnqueueAction implements Directive {
 
     @Override
     public Result apply(WebHook webhook) {
-      webhook.enqueue(queueName);
-      return Result.NULL;
+      if (webhook.context.isDry()) {
+        return Result.TRUE;
+      }
+      return Result.of(webhook.enqueue(queueName));
+    }
+
+    @Override
+    public boolean needsPayload() {
+      return false;
     }
 
     @Override
@@ -26,6 +26,11 @@ final class ExitAction implements Directive {
     throw new ExitActionException();
   }
 
+  @Override
+  public boolean needsPayload() {
+    return false;
+  }
+
   @Override
   public String toString() {
     return "EXIT";
@@ -15,15 +15,14 @@
  */
 package ar.com.rjgodoy.webhook_router.filter;
 
+import ar.com.rjgodoy.webhook_router.JsonPath;
 import ar.com.rjgodoy.webhook_router.WebHook;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import org.json.JSONArray;
 
-@RequiredArgsConstructor
-@EqualsAndHashCode(callSuper = false)
+@EqualsAndHashCode(callSuper = false, exclude = {"array", "local"})
 @Getter(AccessLevel.PACKAGE)
 final class ForAction implements Directive, HasLineNumber {
 
@@ -34,17 +33,33 @@ final class ForAction implements Directive, HasLineNumber {
   private final String arrayName;
   private final Directive body;
 
+  @Getter(AccessLevel.NONE)
+  private final JsonPath array;
+
+  /** The name of the loop variable in the context. */
+  @Getter(AccessLevel.NONE)
+  private final String local;
+
+  ForAction(int lineNumber, String variable, String arrayName, Directive body) {
+    this.lineNumber = lineNumber;
+    this.variable = variable;
+    this.arrayName = arrayName;
+    this.body = body;
+    array = JsonPath.compile(arrayName);
+    local = "%" + variable;
+  }
+
   @Override
   public Result apply(WebHook webhook) {
-    Object obj = webhook.resolve(arrayName);
+    Object obj = webhook.resolve(this.array);
     if (obj instanceof JSONArray array) {
       int n = array.length();
       for (int i = 0; i < n; i++) {
-        webhook.context.set("%" + variable, array.get(i));
+        webhook.context.set(local, array.get(i));
         try {
           body.apply(webhook);
         } finally {
-          webhook.context.unset("%" + variable);
+          webhook.context.unset(local);
         }
       }
       return Result.NULL;
@@ -16,15 +16,11 @@
 package ar.com.rjgodoy.webhook_router.filter;
 
 import ar.com.rjgodoy.webhook_router.WebHook;
-import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.List;
@@ -56,6 +52,9 @@ final class GetAction extends HttpMethodAction {
   @Getter(AccessLevel.PROTECTED)
   private final Directive body;
 
+  @Getter(AccessLevel.PROTECTED)
+  private final RateLimit rate;
+
   @Override
   protected String getMethodName() {
     return "GET";
@@ -102,11 +101,8 @@ final class GetAction extends HttpMethodAction {
   }
 
   @Override
-  protected HttpResponse<String> send(HttpClient client, HttpRequest.Builder request,
-      WebHook webhook)
-      throws IOException, InterruptedException {
+  protected void setMethod(HttpRequest.Builder request, WebHook webhook) {
     request.GET();
-    return client.send(request.build(), BodyHandlers.ofString());
   }
 
 }
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import ar.com.rjgodoy.webhook_router.WebHook;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selects the branches of an {@link OrSequence} that may match a webhook, according to their
+ * leading header predicates.
+ * <p>
+ * A branch is keyed if its first directive is a header predicate with the {@code EQ} operator
+ * and a constant value (e.g. {@code X-GitHub-Event: push}). Such a branch evaluates to
+ * {@link Result#FALSE} without side effects unless the webhook has that header with that value,
+ * so the branches whose key does not match the headers of the webhook can be skipped. Branches
+ * that are not keyed are always selected.
+ */
+final class HeaderDispatchIndex {
+
+  /** The minimum number of keyed branches for which an index is built. */
+  private static final int MIN_KEYED_BRANCHES = 2;
+
+  private final int size;
+
+  /** The branches that are not keyed. */
+  private final BitSet unkeyed = new BitSet();
+
+  /** The keyed branches, by (lowercase) header name and value. */
+  private final Map<String, Map<String, BitSet>> keyed = new HashMap<>();
+
+  private HeaderDispatchIndex(int size) {
+    this.size = size;
+  }
+
+  /**
+   * Builds an index for the given branches.
+   *
+   * @return the index, or {@code null} if there are not enough keyed branches.
+   */
+  static HeaderDispatchIndex build(List<Directive> branches) {
+    HeaderDispatchIndex index = new HeaderDispatchIndex(branches.size());
+    int count = 0;
+    for (int i = 0; i < branches.size(); i++) {
+      HeaderPredicate predicate = getLeadingPredicate(branches.get(i));
+      if (predicate != null) {
+        index.keyed.computeIfAbsent(predicate.getName().toLowerCase(), name -> new HashMap<>())
+            .computeIfAbsent(predicate.getMacro().eval(null), value -> new BitSet())
+            .set(i);
+        ++count;
+      } else {
+        index.unkeyed.set(i);
+      }
+    }
+    return count >= MIN_KEYED_BRANCHES ? index : null;
+  }
+
+  private static HeaderPredicate getLeadingPredicate(Directive directive) {
+    if (directive instanceof OtherwiseDirective otherwise) {
+      directive = otherwise.getDirective();
+    }
+    if (directive instanceof AndSequence and && !and.getDirectives().isEmpty()) {
+      directive = and.getDirectives().get(0);
+    }
+    if (directive instanceof HeaderPredicate predicate
+        && predicate.getOperator() == PredicateOperator.EQ
+        && predicate.getMacro().isConstant()) {
+      return predicate;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the branches that may match the given webhook, in the same order as in the sequence.
+   */
+  BitSet select(WebHook webhook) {
+    BitSet selected = (BitSet) unkeyed.clone();
+    keyed.forEach((name, values) -> webhook.getHeader(name).map(values::get)
+        .ifPresent(selected::or));
+    return selected;
+  }
+
+  /**
+   * Returns the number of branches in the sequence.
+   */
+  int size() {
+    return size;
+  }
+
+}
@@ -50,6 +50,11 @@ final class HeaderPredicate implements Directive, HasLineNumber {
     return Result.of(webhook.getHeader(name).filter(s1 -> operator.test(s1, value)).isPresent());
   }
 
+  @Override
+  public boolean needsPayload() {
+    return macro.needsPayload();
+  }
+
   @Override
   public String toString() {
     String op = operator == PredicateOperator.EQ ? "" : operator.toString().toLowerCase();
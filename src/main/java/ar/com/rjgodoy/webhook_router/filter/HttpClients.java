@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Shares the HTTP clients among all the HTTP actions, so that the connections to a destination
+ * are kept alive and reused across requests and webhooks.
+ * <p>
+ * Each client owns a selector thread and a connection pool. Clients are keyed by destination
+ * (scheme and authority), so that a slow destination does not exhaust the connections of other
+ * destinations. All the clients share the same settings.
+ */
+public final class HttpClients {
+
+  /** The default time to wait for a connection to be established. */
+  static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+  /** The clients, by scheme and authority of their destination. */
+  private static final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+  /** The default maximum number of asynchronous requests in flight per destination host. */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+  private static volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+  private static final Map<String, Semaphore> inFlight = new ConcurrentHashMap<>();
+
+  private HttpClients() {}
+
+  /**
+   * Configures the connection pools. The connection pools are created by the JDK when the first
+   * client is built, therefore this method must be called before any HTTP action is executed.
+   *
+   * @param poolSize the maximum number of idle connections kept alive per pool, or 0 for no limit.
+   * @param idleTimeout the time after which an idle connection is closed, or {@code null} for the
+   *        default of the JDK.
+   * @throws IllegalStateException if a client has already been built.
+   */
+  public static void configure(int poolSize, Duration idleTimeout) {
+    if (poolSize < 0) {
+      throw new IllegalArgumentException("poolSize must not be negative");
+    }
+    if (!clients.isEmpty()) {
+      throw new IllegalStateException("HTTP clients are already in use");
+    }
+    System.setProperty("jdk.httpclient.connectionPoolSize", Integer.toString(poolSize));
+    if (idleTimeout != null) {
+      System.setProperty("jdk.httpclient.keepalive.timeout",
+          Long.toString(Math.max(1, idleTimeout.toSeconds())));
+    }
+  }
+
+  /**
+   * Sets the maximum number of asynchronous requests in flight per destination host. This method
+   * must be called before any HTTP action is executed.
+   *
+   * @param maxInFlight the maximum number of requests in flight.
+   * @throws IllegalStateException if a request has already been sent.
+   */
+  public static void limitInFlight(int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be positive");
+    }
+    if (!inFlight.isEmpty()) {
+      throw new IllegalStateException("HTTP clients are already in use");
+    }
+    HttpClients.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Returns the permits for the asynchronous requests in flight to the host of the given URI.
+   */
+  static Semaphore getInFlight(URI uri) {
+    return inFlight.computeIfAbsent(uri.getHost().toLowerCase(),
+        host -> new Semaphore(maxInFlight));
+  }
+
+  /**
+   * Returns the shared HTTP/1.1 client for the destination of the given URI.
+   */
+  static HttpClient get(URI uri) {
+    String destination = uri.getScheme().toLowerCase() + "://"
+        + uri.getRawAuthority().toLowerCase();
+    return clients.computeIfAbsent(destination, k -> HttpClient.newBuilder()
+        .version(Version.HTTP_1_1)
+        .connectTimeout(CONNECT_TIMEOUT)
+        .build());
+  }
+
+}
@@ -16,16 +16,22 @@
 package ar.com.rjgodoy.webhook_router.filter;
 
 import ar.com.rjgodoy.webhook_router.Header;
+import ar.com.rjgodoy.webhook_router.JsonPath;
 import ar.com.rjgodoy.webhook_router.WebHook;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
-import java.net.http.HttpClient.Version;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -37,6 +43,8 @@ abstract class HttpMethodAction implements Directive, HasLineNumber {
 
   protected abstract Directive getBody();
 
+  protected abstract RateLimit getRate();
+
   protected abstract String getMethodName();
 
   public abstract static class HttpMethodActionBuilder<T extends HttpMethodActionBuilder<?>> {
@@ -46,6 +54,8 @@ abstract class HttpMethodAction implements Directive, HasLineNumber {
 
     public abstract T body(Directive value);
 
+    public abstract T rate(RateLimit value);
+
     public abstract T lineNumber(int lineNumber);
 
     public abstract HttpMethodAction build();
@@ -87,9 +97,10 @@ abstract class HttpMethodAction implements Directive, HasLineNumber {
     return Result.TRUE;
   }
 
-  protected abstract HttpResponse<String> send(HttpClient client, HttpRequest.Builder request,
-      WebHook webhook)
-      throws IOException, InterruptedException;
+  /**
+   * Sets the method (and the body, if any) of the request.
+   */
+  protected abstract void setMethod(HttpRequest.Builder request, WebHook webhook);
 
   protected boolean forwardCurrentWebhook() {
     return false;
@@ -99,6 +110,13 @@ abstract class HttpMethodAction implements Directive, HasLineNumber {
     return uri;
   }
 
+  // an unmodified payload is forwarded without parsing it, but INTO merges into the payload
+  @Override
+  public boolean needsPayload() {
+    return getMacro().needsPayload() || getInto() != null
+        || getBody() != null && getBody().needsPayload();
+  }
+
   private boolean execute(URI uri, WebHook webhook) {
 
     WebHook original = webhook;
@@ -112,8 +130,8 @@ abstract class HttpMethodAction implements Directive, HasLineNumber {
         }
 
         @Override
-        public Object resolve(String expansion) {
-          return original.resolve(expansion);
+        public Object resolve(JsonPath path) {
+          return original.resolve(path);
         }
       };
     }
@@ -127,8 +145,7 @@ abstract class HttpMethodAction implements Directive, HasLineNumber {
       uri = decorateURI(uri, webhook);
     }
 
-    HttpClient client = HttpClient.newBuilder().version(Version.HTTP_1_1)
-        .connectTimeout(Duration.ofSeconds(10)).build();
+    HttpClient client = HttpClients.get(uri);
 
     HttpRequest.Builder request = HttpRequest.newBuilder().uri(uri).timeout(Duration.ofSeconds(60))
         .header("Content-Type", "application/json");
@@ -144,17 +161,99 @@ abstract class HttpMethodAction implements Directive, HasLineNumber {
       request.header(header.name(), header.value());
     }
 
+    setMethod(request, webhook);
+
+    CircuitBreaker breaker = CircuitBreaker.get(uri);
+    if (!breaker.tryAcquire()) {
+      logError("Circuit open " + uri);
+      return false;
+    }
+
+    long delay = 0;
+    if (getRate() != null) {
+      delay = RateLimiter.get(getRate(), uri).reserve();
+    }
+
+    if (getInto() == null && original.context.isAsync()) {
+      return sendAsync(client, request.build(), uri, original, breaker, delay);
+    }
+
     HttpResponse<String> response;
     try {
-      response = send(client, request, webhook);
+      TimeUnit.NANOSECONDS.sleep(delay);
+      response = client.send(request.build(), BodyHandlers.ofString());
     } catch (IOException e) {
+      breaker.failure();
       logError(e + " " + uri);
       return false;
     } catch (InterruptedException e) {
+      breaker.cancel();
       e.printStackTrace();
       return false;
+    } catch (RuntimeException e) {
+      breaker.cancel();
+      throw e;
     }
 
+    record(breaker, response);
+    return handle(response, uri, original);
+  }
+
+  // server errors count as failures of the destination, client errors do not
+  private static void record(CircuitBreaker breaker, HttpResponse<?> response) {
+    if (response.statusCode() >= 500) {
+      breaker.failure();
+    } else {
+      breaker.success();
+    }
+  }
+
+  /**
+   * Sends the request without waiting for the response, once the given delay has elapsed. The
+   * evaluation of the rules continues while the request is in flight, and the webhook is consumed
+   * when a successful response is received (see
+   * {@link ar.com.rjgodoy.webhook_router.Context#awaitDeferred()}).
+   */
+  private boolean sendAsync(HttpClient client, HttpRequest request, URI uri, WebHook original,
+      CircuitBreaker breaker, long delay) {
+    Semaphore permits = HttpClients.getInFlight(uri);
+    CompletableFuture<Boolean> future;
+    try {
+      Executor executor = CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS);
+      future = CompletableFuture.supplyAsync(() -> request, executor)
+          .thenCompose(r -> send(client, r, permits))
+          .handle((response, e) -> {
+            if (e != null) {
+              breaker.failure();
+              logError((e instanceof CompletionException ? e.getCause() : e) + " " + uri);
+              return false;
+            }
+            record(breaker, response);
+            return handle(response, uri, original);
+          });
+    } catch (RuntimeException e) {
+      breaker.cancel();
+      throw e;
+    }
+
+    original.context.defer(future);
+    return true;
+  }
+
+  // the permit is taken once the delay has elapsed, and held only while the request is in flight
+  private static CompletableFuture<HttpResponse<String>> send(HttpClient client,
+      HttpRequest request, Semaphore permits) {
+    permits.acquireUninterruptibly();
+    try {
+      return client.sendAsync(request, BodyHandlers.ofString())
+          .whenComplete((response, e) -> permits.release());
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  private boolean handle(HttpResponse<String> response, URI uri, WebHook original) {
     int sc = response.statusCode();
 
     boolean into_json = false;
@@ -165,13 +264,13 @@ abstract class HttpMethodAction implements Directive, HasLineNumber {
       if (contentType.equals("application/json")) {
         String responseBody = response.body().trim();
         if (responseBody.startsWith("[")) {
-          original.getPayload().put(getInto(), new JSONArray(response.body()));
+          original.getWritablePayload().put(getInto(), new JSONArray(response.body()));
         } else {
-          original.getPayload().put(getInto(), new JSONObject(response.body()));
+          original.getWritablePayload().put(getInto(), new JSONObject(response.body()));
         }
         into_json = true;
       } else {
-        original.getPayload().put(getInto(), response.body());
+        original.getWritablePayload().put(getInto(), response.body());
       }
     }
 
@@ -200,6 +299,9 @@ abstract class HttpMethodAction implements Directive, HasLineNumber {
     if (getInto() != null) {
       s += " INTO " + getInto();
     }
+    if (getRate() != null) {
+      s += " " + getRate();
+    }
     if (getBody() != null) {
       s += " WITH " + getBody() + "\n";
     }
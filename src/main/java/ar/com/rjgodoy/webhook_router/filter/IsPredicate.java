@@ -15,25 +15,33 @@
  */
 package ar.com.rjgodoy.webhook_router.filter;
 
+import ar.com.rjgodoy.webhook_router.JsonPath;
 import ar.com.rjgodoy.webhook_router.WebHook;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONString;
 
-@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = "accessor")
 @Getter
 final class IsPredicate implements Directive {
 
   private final String path;
   private final String type;
 
+  @Getter(AccessLevel.NONE)
+  private final JsonPath accessor;
+
+  private IsPredicate(String path, String type) {
+    this.path = path;
+    this.type = type;
+    accessor = JsonPath.compile(path);
+  }
+
   public static IsPredicate newInstance(String path, String type) {
     type = type.toLowerCase();
     switch (type) {
@@ -67,7 +75,7 @@ final class IsPredicate implements Directive {
 
   @Override
   public Result apply(WebHook webhook) {
-    return Result.of(typeOf(webhook.resolve(path)).equals(type));
+    return Result.of(typeOf(webhook.resolve(accessor)).equals(type));
   }
 
   @Override
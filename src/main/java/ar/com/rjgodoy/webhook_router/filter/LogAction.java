@@ -54,10 +54,7 @@ class LogAction implements Directive, HasLineNumber {
   public Result apply(WebHook webhook) {
     String s = macro.eval(webhook);
     if (s != null) {
-      for (String secret : webhook.context.getSecrets().toList()) {
-        s = s.replaceAll(secret, "***");
-      }
-      System.out.println(s);
+      System.out.println(webhook.context.mask(s));
     } else {
       logError("[LOG] Macro expanded to null: " + macro);
     }
@@ -69,6 +66,11 @@ class LogAction implements Directive, HasLineNumber {
     }
   }
 
+  @Override
+  public boolean needsPayload() {
+    return macro.needsPayload() || next != null && next.needsPayload();
+  }
+
   @Override
   public String toString() {
     if (next != null) {
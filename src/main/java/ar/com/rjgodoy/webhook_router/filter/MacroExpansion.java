@@ -15,28 +15,89 @@
  */
 package ar.com.rjgodoy.webhook_router.filter;
 
+import ar.com.rjgodoy.webhook_router.JsonPath;
 import ar.com.rjgodoy.webhook_router.WebHook;
 import java.math.BigDecimal;
+import java.util.Set;
 import lombok.EqualsAndHashCode;
-import lombok.RequiredArgsConstructor;
 
-@RequiredArgsConstructor
-@EqualsAndHashCode
+/**
+ * A macro expansion {@code ${name}}, which resolves to a local variable of a FOR loop, a context
+ * variable, an element of the payload, or a header (in that order of precedence).
+ * <p>
+ * Once the whole configuration has been parsed, the expansion is {@linkplain #classify
+ * classified}: lookups of variables that are never declared are skipped, and if the payload
+ * element is never written by the configuration, whether it is present is cached per webhook, so
+ * that an expansion that resolves to a header is a single lookup.
+ */
+@EqualsAndHashCode(of = "expansion")
 final class MacroExpansion implements MacroStringPart {
   private final String expansion;
 
+  /** Whether the expansion refers to an environment variable. */
+  private final boolean isEnv;
+
+  /** The value of the environment variable. */
+  private final String env;
+
+  private final JsonPath local;
+  private final JsonPath variable;
+  private final JsonPath payload;
+
+  private boolean maybeLocal = true;
+  private boolean maybeVariable = true;
+  private boolean cacheable;
+
+  MacroExpansion(String expansion) {
+    this.expansion = expansion;
+    isEnv = expansion.startsWith("env.");
+    env = isEnv ? System.getenv(expansion.substring(4)) : null;
+    local = JsonPath.compile("%%" + expansion);
+    variable = JsonPath.compile("%" + expansion);
+    payload = JsonPath.compile("$" + expansion);
+  }
+
+  /**
+   * Classifies the expansion according to the names that the configuration may write. This
+   * method must be called before the configuration is used.
+   *
+   * @param locals the names of the FOR variables.
+   * @param variables the names of the context variables.
+   * @param elements the names of the top-level elements of the payload that may be written.
+   */
+  void classify(Set<String> locals, Set<String> variables, Set<String> elements) {
+    String root = payload.getRootSegment();
+    maybeLocal = locals.contains(root);
+    maybeVariable = variables.contains(root);
+    cacheable = !maybeLocal && !maybeVariable && !elements.contains(root);
+  }
+
+  boolean needsPayload() {
+    return !isEnv;
+  }
+
   @Override
   public String eval(WebHook webhook) {
-    if (expansion.startsWith("env.")) {
-      return System.getenv(expansion.substring(4));
+    if (isEnv) {
+      return env;
     }
-    Object value;
-    value = webhook.resolve("%%" + expansion);
-    if (value == null) {
-      value = webhook.resolve("%" + expansion);
+    Object value = null;
+    if (maybeLocal) {
+      value = webhook.resolve(local);
+    }
+    if (value == null && maybeVariable) {
+      value = webhook.resolve(variable);
     }
     if (value == null) {
-      value = webhook.resolve("$" + expansion);
+      if (!cacheable) {
+        value = webhook.resolve(payload);
+      } else if (webhook.getCached(this) == null) {
+        // the payload element cannot be added later, so a miss is remembered
+        value = webhook.resolve(payload);
+        if (value == null) {
+          webhook.putCached(this, Boolean.FALSE);
+        }
+      }
     }
     if (value == null) {
       value = webhook.getHeader(expansion).orElse(null);
@@ -23,32 +23,123 @@ import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.experimental.Accessors;
 
+/**
+ * A string made of literals, escapes and macro expansions.
+ * <p>
+ * When a multi-part string is evaluated, every run of whitespace is collapsed into a single
+ * space. The constant parts are normalized when the string is built, so that only the dynamic
+ * parts are scanned during evaluation, and the output buffer is sized after the longest previous
+ * evaluation.
+ */
 @Getter
-@RequiredArgsConstructor
-@EqualsAndHashCode
+@EqualsAndHashCode(of = "parts")
 class MacroString {
 
   @Getter(AccessLevel.PACKAGE)
   @Accessors(fluent = true)
   private final List<MacroStringPart> parts;
 
+  /** The normalized value of each constant part, or {@code null} for dynamic parts. */
+  @Getter(AccessLevel.NONE)
+  private final String[] constants;
+
+  /** The length of the longest evaluation so far (races are harmless). */
+  @Getter(AccessLevel.NONE)
+  private int capacity = 16;
+
+  public MacroString(List<MacroStringPart> parts) {
+    this.parts = parts;
+    constants = new String[parts.size()];
+    for (int i = 0; i < constants.length; i++) {
+      MacroStringPart part = parts.get(i);
+      if (part instanceof MacroLiteral || part instanceof MacroEscape) {
+        constants[i] = collapse(part.eval(null));
+      }
+    }
+  }
+
+  public MacroString(String string) {
+    this(Arrays.asList(new MacroLiteral(string)));
+  }
+
   public String eval(WebHook webhook) {
     if (parts.size() == 1) {
       return parts.get(0).eval(webhook);
-    } else {
-      StringBuilder sb = new StringBuilder();
-      for (var part : parts) {
-        String s = part.eval(webhook);
+    }
+
+    StringBuilder sb = new StringBuilder(capacity);
+    boolean space = false;
+    for (int i = 0; i < constants.length; i++) {
+      String s = constants[i];
+      if (s != null) {
+        if (s.isEmpty()) {
+          continue;
+        }
+        // a normalized constant may only start with a space that follows another one
+        sb.append(s, space && s.charAt(0) == ' ' ? 1 : 0, s.length());
+        space = s.charAt(s.length() - 1) == ' ';
+      } else {
+        s = parts.get(i).eval(webhook);
         if (s == null) {
           return null;
         }
-        sb.append(s);
+        space = append(sb, s, space);
       }
-      return sb.toString().replaceAll("\\s+", "\s");
     }
+
+    if (sb.length() > capacity) {
+      capacity = sb.length();
+    }
+    return sb.toString();
+  }
+
+  // same as the \s character class of java.util.regex
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /**
+   * Appends a string, replacing each run of whitespace with a single space.
+   *
+   * @param space whether the builder ends with a collapsed run of whitespace.
+   * @return whether the builder ends with a collapsed run of whitespace.
+   */
+  private static boolean append(StringBuilder sb, String s, boolean space) {
+    int n = s.length();
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if (!isWhitespace(c)) {
+        sb.append(c);
+        space = false;
+      } else if (!space) {
+        sb.append(' ');
+        space = true;
+      }
+    }
+    return space;
+  }
+
+  private static String collapse(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    append(sb, s, false);
+    return sb.toString();
+  }
+
+  /**
+   * Returns whether the string does not depend on the webhook, i.e. it has no macro expansions.
+   */
+  boolean isConstant() {
+    return parts.stream()
+        .allMatch(part -> part instanceof MacroLiteral || part instanceof MacroEscape);
+  }
+
+  /**
+   * Returns whether the evaluation may read the payload of the webhook.
+   */
+  boolean needsPayload() {
+    return parts.stream().anyMatch(part -> part instanceof MacroExpansion e && e.needsPayload());
   }
 
   @Override
@@ -63,8 +154,4 @@ class MacroString {
     return new MacroString(parts);
   }
 
-  public MacroString(String string) {
-    parts = Arrays.asList(new MacroLiteral(string));
-  }
-
 }
\ No newline at end of file
@@ -42,6 +42,11 @@ final class NorDirective extends LogicalDirective {
     return result.negate();
   }
 
+  @Override
+  public boolean needsPayload() {
+    return directives.stream().anyMatch(Directive::needsPayload);
+  }
+
   @Override
   public String toString() {
     String s = directives.stream().map(Object::toString).collect(Collectors.joining("\n"));
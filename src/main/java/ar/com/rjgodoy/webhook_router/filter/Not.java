@@ -28,6 +28,11 @@ final class Not implements Directive {
     return directive.apply(webhook).negate();
   }
 
+  @Override
+  public boolean needsPayload() {
+    return directive.needsPayload();
+  }
+
   @Override
   public String toString() {
     return "NOT " + directive;
@@ -33,6 +33,11 @@ final class NullPredicate implements Directive {
     return Result.of(macro.eval(webhook) == null);
   }
 
+  @Override
+  public boolean needsPayload() {
+    return macro.needsPayload();
+  }
+
   @Override
   public String toString() {
     return "NULL " + macro;
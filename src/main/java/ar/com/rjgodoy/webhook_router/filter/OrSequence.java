@@ -15,33 +15,57 @@
  */
 package ar.com.rjgodoy.webhook_router.filter;
 
+import ar.com.rjgodoy.webhook_router.HeaderMap;
 import ar.com.rjgodoy.webhook_router.WebHook;
+import java.util.BitSet;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 
-@RequiredArgsConstructor
-@EqualsAndHashCode(callSuper = false)
+@EqualsAndHashCode(callSuper = false, exclude = "index")
 final class OrSequence extends LogicalDirective {
 
   @Getter(AccessLevel.PACKAGE)
   private final List<Directive> directives;
 
+  /** Dispatches the webhook to the candidate branches, or {@code null}. */
+  private final HeaderDispatchIndex index;
+
+  OrSequence(List<Directive> directives) {
+    this.directives = directives;
+    index = HeaderDispatchIndex.build(directives);
+  }
+
   @Override
   public Result apply(WebHook webhook) {
     procedures().forEach(webhook.context::declare);
 
     Result result = Result.NULL;
     try (var scope = webhook.context.newLocalScope()) {
-      for (Directive directive : directives) {
-        if (result == Result.TRUE && directive instanceof OtherwiseDirective) {
-          continue;
+      if (index == null) {
+        for (Directive directive : directives) {
+          result = apply(result, directive, webhook);
+        }
+      } else {
+        BitSet selected = index.select(webhook);
+        int applied = 0;
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+          HeaderMap headers = webhook.getHeaders();
+          int version = headers.getVersion();
+          result = apply(result, directives.get(i), webhook);
+          ++applied;
+          if (webhook.getHeaders() != headers || headers.getVersion() != version) {
+            // the branch wrote a header, which may select (or deselect) the following branches
+            selected = index.select(webhook);
+          }
+        }
+        if (applied < index.size()) {
+          // the skipped branches evaluate to FALSE
+          result = result.or(Result.FALSE);
         }
-        result = result.or(directive.apply(webhook));
       }
     }
 
@@ -49,6 +73,18 @@ final class OrSequence extends LogicalDirective {
     return result;
   }
 
+  @Override
+  public boolean needsPayload() {
+    return directives.stream().anyMatch(Directive::needsPayload);
+  }
+
+  private static Result apply(Result result, Directive directive, WebHook webhook) {
+    if (result == Result.TRUE && directive instanceof OtherwiseDirective) {
+      return result;
+    }
+    return result.or(directive.apply(webhook));
+  }
+
   private Stream<ProcedureDecl> procedures() {
     return directives.stream().filter(ProcedureDecl.class::isInstance)
         .map(ProcedureDecl.class::cast);
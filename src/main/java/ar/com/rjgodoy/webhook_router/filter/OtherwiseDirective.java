@@ -33,6 +33,11 @@ final class OtherwiseDirective implements Directive {
     return directive.apply(webhook);
   }
 
+  @Override
+  public boolean needsPayload() {
+    return directive.needsPayload();
+  }
+
   @Override
   public String toString() {
     return "otherwise " + directive;
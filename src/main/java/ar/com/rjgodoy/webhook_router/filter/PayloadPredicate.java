@@ -15,16 +15,16 @@
  */
 package ar.com.rjgodoy.webhook_router.filter;
 
+import ar.com.rjgodoy.webhook_router.JsonPath;
 import ar.com.rjgodoy.webhook_router.WebHook;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 
-@RequiredArgsConstructor
-@EqualsAndHashCode(exclude = "lineNumber")
+@EqualsAndHashCode(exclude = {"lineNumber", "accessor"})
 @Getter
 final class PayloadPredicate implements Directive, HasLineNumber {
 
@@ -35,6 +35,18 @@ final class PayloadPredicate implements Directive, HasLineNumber {
   private final MacroString macro;
   private final PredicateOperator operator;
 
+  @Getter(AccessLevel.NONE)
+  private final JsonPath accessor;
+
+  public PayloadPredicate(int lineNumber, String path, MacroString macro,
+      PredicateOperator operator) {
+    this.lineNumber = lineNumber;
+    this.path = path;
+    this.macro = macro;
+    this.operator = operator;
+    accessor = JsonPath.compile(path);
+  }
+
   public PayloadPredicate(int lineNumber, String path, String value, PredicateOperator operator) {
     this(lineNumber, path, new MacroString(value), operator);
   }
@@ -46,7 +58,7 @@ final class PayloadPredicate implements Directive, HasLineNumber {
       logError("Macro expanded to null: " + macro);
       return Result.FALSE;
     }
-    return Result.of(Optional.ofNullable(webhook.resolve(path)).map(Object::toString)
+    return Result.of(Optional.ofNullable(webhook.resolve(accessor)).map(Object::toString)
         .filter(s1 -> operator.test(s1, value)).isPresent());
   }
 
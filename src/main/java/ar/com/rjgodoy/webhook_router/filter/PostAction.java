@@ -16,12 +16,8 @@
 package ar.com.rjgodoy.webhook_router.filter;
 
 import ar.com.rjgodoy.webhook_router.WebHook;
-import java.io.IOException;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -47,6 +43,9 @@ final class PostAction extends HttpMethodAction {
   @Getter(AccessLevel.PROTECTED)
   private final Directive body;
 
+  @Getter(AccessLevel.PROTECTED)
+  private final RateLimit rate;
+
   @Override
   protected String getMethodName() {
     return "POST";
@@ -58,14 +57,15 @@ final class PostAction extends HttpMethodAction {
   }
 
   @Override
-  protected HttpResponse<String> send(HttpClient client, HttpRequest.Builder request,
-      WebHook webhook)
-      throws IOException, InterruptedException {
-
-    String payload = webhook.getPayload().toString();
-    request.POST(BodyPublishers.ofString(payload));
-
-    return client.send(request.build(), BodyHandlers.ofString());
+  protected void setMethod(HttpRequest.Builder request, WebHook webhook) {
+    if (!webhook.isPayloadModified()) {
+      // forward the original bytes, as read from the spool
+      request.POST(BodyPublishers.ofByteArray(webhook.getOriginal(), webhook.getPayloadOffset(),
+          webhook.getPayloadLength()));
+    } else {
+      String payload = webhook.getPayload().toString();
+      request.POST(BodyPublishers.ofString(payload));
+    }
   }
 
 }
@@ -41,6 +41,12 @@ public final class ProcedureDecl implements Directive {
     return body.apply(webhook);
   }
 
+  // the body is applied by CALL, which needs the payload anyway
+  @Override
+  public boolean needsPayload() {
+    return false;
+  }
+
   @Override
   public String toString() {
     return "PROCEDURE " + name + " " + body;
@@ -16,6 +16,8 @@
 package ar.com.rjgodoy.webhook_router.filter;
 
 import ar.com.rjgodoy.webhook_router.WebHook;
+import java.util.concurrent.TimeUnit;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 
@@ -29,22 +31,107 @@ public class QueueDecl implements Directive {
   @NonNull
   private final Directive body;
 
+  @Getter(AccessLevel.NONE)
   private final RetentionTask maxTasksRetention;
+
+  @Getter(AccessLevel.NONE)
   private final RetentionDays maxDaysRetention;
+
   private final String retentionPolicyCombinator;
 
+  @Getter(AccessLevel.NONE)
+  private final MacroString orderedBy;
+
   // Updated constructor to include new fields
-  QueueDecl(@NonNull String name, RetentionTask maxTasksRetention, RetentionDays maxDaysRetention,
-      String retentionPolicyCombinator, @NonNull Directive body) {
+  QueueDecl(@NonNull String name, MacroString orderedBy, RetentionTask maxTasksRetention,
+      RetentionDays maxDaysRetention, String retentionPolicyCombinator, @NonNull Directive body) {
     this.name = name;
+    this.orderedBy = orderedBy;
     this.maxTasksRetention = maxTasksRetention;
     this.maxDaysRetention = maxDaysRetention;
     this.retentionPolicyCombinator = retentionPolicyCombinator; // Assign new field
     this.body = body;
   }
 
+  QueueDecl(@NonNull String name, @NonNull Directive body) {
+    this(name, null, null, null, null, body);
+  }
+
   public QueueDecl(QueueDecl other, Directive body) {
-    this(other.name, other.maxTasksRetention, other.maxDaysRetention, other.retentionPolicyCombinator, body);
+    this(other.name, other.orderedBy, other.maxTasksRetention, other.maxDaysRetention,
+        other.retentionPolicyCombinator, body);
+  }
+
+  /**
+   * Returns the maximum number of processed tasks retained by the queue, or {@code null} if there
+   * is no such policy.
+   */
+  public Integer getMaxTasksRetention() {
+    return maxTasksRetention != null ? maxTasksRetention.tasks() : null;
+  }
+
+  /**
+   * Returns the number of days that processed tasks are retained by the queue, or {@code null} if
+   * there is no such policy.
+   */
+  public Integer getMaxDaysRetention() {
+    return maxDaysRetention != null ? maxDaysRetention.days() : null;
+  }
+
+  /**
+   * Returns whether the queue declares a {@code RETENTION} clause.
+   */
+  public boolean hasRetentionPolicy() {
+    return maxTasksRetention != null || maxDaysRetention != null;
+  }
+
+  /**
+   * Returns whether a processed task must be removed from the history of the queue, according to
+   * its retention policies. If both policies are specified and combined with {@code AND}, the task
+   * is removed only if it exceeds both limits; otherwise it is removed if it exceeds any limit.
+   *
+   * @param count the number of processed tasks in the history that are not older than this task
+   *        (including this task).
+   * @param age the time elapsed since the task was processed, in milliseconds.
+   */
+  public boolean isExpired(int count, long age) {
+    boolean tooMany = maxTasksRetention != null && count > maxTasksRetention.tasks();
+    boolean tooOld =
+        maxDaysRetention != null && age > TimeUnit.DAYS.toMillis(maxDaysRetention.days());
+    if (maxTasksRetention != null && maxDaysRetention != null
+        && "AND".equals(retentionPolicyCombinator)) {
+      return tooMany && tooOld;
+    } else {
+      return tooMany || tooOld;
+    }
+  }
+
+  /**
+   * Returns whether the queue declares an {@code ORDERED BY} clause, i.e. webhooks with different
+   * ordering keys may be processed concurrently.
+   */
+  public boolean isOrdered() {
+    return orderedBy != null;
+  }
+
+  /**
+   * Evaluates the ordering key of a webhook. Webhooks with the same key must be processed in
+   * order.
+   *
+   * @return the ordering key, or {@code null} if the queue is not ordered or the key expands to
+   *         null.
+   */
+  public String getOrderingKey(WebHook webhook) {
+    return orderedBy == null ? null : orderedBy.eval(webhook);
+  }
+
+  /**
+   * Returns whether processing a webhook in this queue may read its payload. Otherwise, the
+   * payload does not need to be parsed.
+   */
+  @Override
+  public boolean needsPayload() {
+    return orderedBy != null && orderedBy.needsPayload() || body.needsPayload();
   }
 
   @Override
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code RATE} clause of an HTTP action.
+ *
+ * @param permits the number of requests allowed per unit.
+ * @param unit the unit of time (seconds, minutes or hours).
+ * @param name the name of the limiter, or {@code null} if the limiter is keyed by the host of the
+ *        request.
+ */
+record RateLimit(int permits, TimeUnit unit, String name) {
+
+  RateLimit {
+    if (permits < 1) {
+      throw new IllegalArgumentException("permits must be positive");
+    }
+  }
+
+  /** Returns the time between two requests, in nanoseconds. */
+  double interval() {
+    return (double) unit.toNanos(1) / permits;
+  }
+
+  @Override
+  public String toString() {
+    String s = "RATE " + permits + "/" + switch (unit) {
+      case SECONDS -> "s";
+      case MINUTES -> "m";
+      case HOURS -> "h";
+      default -> unit.toString();
+    };
+    return name != null ? s + " AS " + name : s;
+  }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket that spaces the requests to a destination.
+ * <p>
+ * The bucket holds up to one unit worth of permits, so that bursts are allowed as long as the
+ * average rate is respected. When the bucket is empty, requests are delayed instead of dropped:
+ * each request reserves the next permit, and waits until that permit becomes available.
+ * <p>
+ * Limiters are shared by all the HTTP actions, and keyed by the name given in the {@code RATE}
+ * clause, or by the host of the request. If the actions that share a limiter declare different
+ * rates, the strictest one is enforced, so that their combined traffic respects every rate.
+ */
+final class RateLimiter {
+
+  private static final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+  private double interval;
+
+  private double capacity;
+
+  private final LongSupplier clock;
+
+  /** The number of available permits, negative if there are pending reservations. */
+  private double permits;
+
+  private long updatedAt;
+
+  /**
+   * @param clock the source of the current time, in nanoseconds.
+   */
+  RateLimiter(RateLimit rate, LongSupplier clock) {
+    interval = rate.interval();
+    capacity = rate.permits();
+    this.clock = clock;
+    permits = capacity;
+    updatedAt = clock.getAsLong();
+  }
+
+  /**
+   * Returns the shared limiter for the given clause and the host of the given URI.
+   */
+  static RateLimiter get(RateLimit rate, URI uri) {
+    String name = rate.name();
+    if (name == null) {
+      // a URI without a host is keyed by its authority, which may be null as well
+      name = uri.getHost() != null ? uri.getHost().toLowerCase()
+          : Objects.toString(uri.getRawAuthority(), "");
+    }
+    RateLimiter limiter = limiters.computeIfAbsent(name,
+        key -> new RateLimiter(rate, System::nanoTime));
+    limiter.restrict(rate);
+    return limiter;
+  }
+
+  /**
+   * Enforces the given rate as well, if it is stricter than the rate of this limiter.
+   */
+  synchronized void restrict(RateLimit rate) {
+    interval = Math.max(interval, rate.interval());
+    capacity = Math.min(capacity, rate.permits());
+    permits = Math.min(permits, capacity);
+  }
+
+  /**
+   * Reserves a permit.
+   *
+   * @return the time to wait until the permit becomes available, in nanoseconds.
+   */
+  synchronized long reserve() {
+    long now = clock.getAsLong();
+    permits = Math.min(capacity, permits + (now - updatedAt) / interval);
+    updatedAt = now;
+    permits -= 1;
+    return permits >= 0 ? 0 : (long) Math.ceil(-permits * interval);
+  }
+
+}
@@ -50,6 +50,10 @@ final class ReenterAction implements Directive, HasLineNumber {
       }
     }
 
+    if (copy) {
+      // the copy is consumed by its own requests
+      webhook.context.awaitDeferred();
+    }
     return Result.of(webhook.context.isConsumed());
   }
 
@@ -43,6 +43,11 @@ class SecretAction implements Directive, HasLineNumber {
     return Result.NULL;
   }
 
+  @Override
+  public boolean needsPayload() {
+    return macro.needsPayload();
+  }
+
   @Override
   public String toString() {
     return "SECRET " + macro;
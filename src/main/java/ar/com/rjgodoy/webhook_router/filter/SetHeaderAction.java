@@ -43,6 +43,11 @@ final class SetHeaderAction implements Directive, HasLineNumber {
     return Result.NULL;
   }
 
+  @Override
+  public boolean needsPayload() {
+    return macro.needsPayload();
+  }
+
   @Override
   public String toString() {
     return "SET " + name + ": " + macro;
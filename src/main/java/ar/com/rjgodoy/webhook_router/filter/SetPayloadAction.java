@@ -15,15 +15,14 @@
  */
 package ar.com.rjgodoy.webhook_router.filter;
 
+import ar.com.rjgodoy.webhook_router.JsonPath;
 import ar.com.rjgodoy.webhook_router.WebHook;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import org.json.JSONObject;
 
-@RequiredArgsConstructor
-@EqualsAndHashCode(callSuper = false, exclude = "lineNumber")
+@EqualsAndHashCode(callSuper = false, exclude = {"lineNumber", "accessor", "parent"})
 @Getter(AccessLevel.PACKAGE)
 final class SetPayloadAction implements Directive, HasLineNumber {
 
@@ -34,22 +33,45 @@ final class SetPayloadAction implements Directive, HasLineNumber {
   private final String type;
   private final MacroString macro;
 
+  @Getter(AccessLevel.NONE)
+  private final JsonPath accessor;
+
+  /** The path of the object that contains the property, or {@code null} if not nested. */
+  @Getter(AccessLevel.NONE)
+  private final JsonPath parent;
+
+  SetPayloadAction(int lineNumber, String path, String type, MacroString macro) {
+    this.lineNumber = lineNumber;
+    this.path = path;
+    this.type = type;
+    this.macro = macro;
+    accessor = JsonPath.compile(path);
+    parent = accessor.isNested() ? accessor.getParent() : null;
+  }
+
   @Override
   public Result apply(WebHook webhook) {
 
-    String var;
-    int pos = path.lastIndexOf('.');
+    String var = accessor.getLastSegment();
     JSONObject obj;
-    if (pos < 0) {
-      if (path.startsWith("%")) {
+    if (parent == null) {
+      if (accessor.isContext()) {
         obj = new JSONObject();
       } else {
-        obj = webhook.getPayload();
+        obj = webhook.getWritablePayload();
       }
-      var = path.substring(1);
     } else {
-      obj = (JSONObject) webhook.resolve(path.substring(0, pos - 1));
-      var = path.substring(pos + 1);
+      if (!accessor.isContext()) {
+        obj = webhook.getWritablePayload(parent);
+      } else if (webhook.resolve(parent) instanceof JSONObject object) {
+        obj = object;
+      } else {
+        obj = null;
+      }
+      if (obj == null) {
+        logError("[SET] " + parent + " is not an object");
+        return Result.FALSE;
+      }
     }
 
     String value = macro.eval(webhook);
@@ -97,7 +119,7 @@ final class SetPayloadAction implements Directive, HasLineNumber {
         return Result.FALSE;
     }
 
-    if (path.startsWith("%")) {
+    if (accessor.isContext() && parent == null) {
       webhook.context.set(var, obj.get(var));
     }
     return Result.NULL;
@@ -31,6 +31,11 @@ final class TruePredicate implements Directive {
     return Result.TRUE;
   }
 
+  @Override
+  public boolean needsPayload() {
+    return false;
+  }
+
   @Override
   public String toString() {
     return "TRUE";
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class HeaderMapTest {
+
+  @Test
+  public void testLookup() {
+    HeaderMap map = new HeaderMap(List.of(new Header("X-Foo: 1"), new Header("x-bar: 2"),
+        new Header("X-FOO: 3")));
+    assertEquals("1", map.getValue("x-foo"));
+    assertEquals("2", map.getValue("X-Bar"));
+    assertNull(map.getValue("X-Baz"));
+    assertEquals(List.of("X-Foo: 1", "x-bar: 2", "X-FOO: 3"),
+        map.stream().map(Header::toString).toList());
+  }
+
+  @Test
+  public void testSetValue() {
+    HeaderMap map = new HeaderMap();
+    map.setValue("X-Foo", "1");
+    map.setValue("x-foo", "2");
+    assertEquals(1, map.size());
+    assertEquals("X-Foo: 2", map.get(0).toString());
+  }
+
+  @Test
+  public void testGrow() {
+    HeaderMap map = new HeaderMap();
+    for (int i = 0; i < 100; i++) {
+      map.add(new Header("X-Header-" + i, Integer.toString(i)));
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Integer.toString(i), map.getValue("x-header-" + i));
+    }
+    assertEquals(100, map.size());
+  }
+
+  @Test
+  public void testCopy() {
+    HeaderMap map = new HeaderMap(List.of(new Header("X-Foo: 1")));
+    HeaderMap copy = map.copy();
+    copy.setValue("X-Foo", "2");
+    assertEquals("1", map.getValue("X-Foo"));
+    assertNotSame(map.get(0), copy.get(0));
+  }
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import ar.com.rjgodoy.webhook_router.filter.Configuration;
+import ar.com.rjgodoy.webhook_router.filter.DirectiveParser;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IngressTest {
+
+  @TempDir
+  Path root;
+
+  @Test
+  public void testReceive() throws Exception {
+    Configuration config = new DirectiveParser(Arrays.asList("""
+        X-GitHub-Event: ping
+        DROP
+        """.split("\n")).iterator()).parseConfiguration();
+
+    SpoolManager spool = new SpoolManager(root.toFile());
+    HttpClient client = HttpClient.newHttpClient();
+    try (WorkerScheduler scheduler = new WorkerScheduler(spool, new Context(spool, config), false);
+        Ingress ingress = new Ingress(spool, scheduler, new InetSocketAddress("127.0.0.1", 0))) {
+      URI uri = URI.create("http://127.0.0.1:" + ingress.getAddress().getPort() + "/hook?x=1");
+
+      HttpRequest request = HttpRequest.newBuilder(uri)
+          .header("X-GitHub-Event", "ping")
+          .header("Content-Type", "application/json")
+          .POST(BodyPublishers.ofString("{\"zen\":\"Keep it logically awesome.\"}"))
+          .build();
+      assertEquals(202, client.send(request, BodyHandlers.discarding()).statusCode());
+
+      request = HttpRequest.newBuilder(uri).GET().build();
+      assertEquals(405, client.send(request, BodyHandlers.discarding()).statusCode());
+
+      scheduler.awaitIdle();
+    }
+
+    List<File> processed = spool.discover("default", State.PROCESSED);
+    assertThat(processed, hasSize(1));
+    String content = Files.readString(processed.get(0).toPath());
+    assertThat(content, startsWith("/hook?x=1\n\n"));
+    assertThat(content, containsString("\nContent-type: application/json\n"));
+    assertThat(content, containsString("\n\n{\"zen\":\"Keep it logically awesome.\"}"));
+  }
+
+  @Test
+  public void testHopByHopHeaders() throws Exception {
+    Configuration config = new DirectiveParser(Arrays.asList("""
+        X-GitHub-Event: ping
+        DROP
+        """.split("\n")).iterator()).parseConfiguration();
+
+    SpoolManager spool = new SpoolManager(root.toFile());
+    HttpClient client = HttpClient.newHttpClient();
+    try (WorkerScheduler scheduler = new WorkerScheduler(spool, new Context(spool, config), false);
+        Ingress ingress = new Ingress(spool, scheduler, new InetSocketAddress("127.0.0.1", 0))) {
+      URI uri = URI.create("http://127.0.0.1:" + ingress.getAddress().getPort() + "/hook");
+
+      // a body of unknown length is sent with a chunked transfer encoding
+      HttpRequest request = HttpRequest.newBuilder(uri)
+          .header("X-GitHub-Event", "ping")
+          .header("Content-Type", "application/json")
+          .POST(BodyPublishers.fromPublisher(BodyPublishers.ofString("{}")))
+          .build();
+      assertEquals(202, client.send(request, BodyHandlers.discarding()).statusCode());
+      scheduler.awaitIdle();
+    }
+
+    List<File> processed = spool.discover("default", State.PROCESSED);
+    assertThat(processed, hasSize(1));
+    String content = Files.readString(processed.get(0).toPath());
+    assertThat(content, containsString("\nX-github-event: ping\n"));
+    assertThat(content, not(containsString("Transfer-encoding")));
+    assertThat(content, containsString("\n\n{}"));
+  }
+
+  @Test
+  public void testReject() throws Exception {
+    Configuration config = new DirectiveParser(List.of("DROP").iterator()).parseConfiguration();
+
+    SpoolManager spool = new SpoolManager(root.toFile());
+    HttpClient client = HttpClient.newHttpClient();
+    try (WorkerScheduler scheduler = new WorkerScheduler(spool, new Context(spool, config), false);
+        Ingress ingress = new Ingress(spool, scheduler, new InetSocketAddress("127.0.0.1", 0))) {
+      int port = ingress.getAddress().getPort();
+      URI uri = URI.create("http://127.0.0.1:" + port + "/hook");
+
+      HttpRequest request = HttpRequest.newBuilder(uri)
+          .header("Content-Type", "text/plain")
+          .POST(BodyPublishers.ofString("{}"))
+          .build();
+      assertEquals(415, client.send(request, BodyHandlers.discarding()).statusCode());
+
+      request = HttpRequest.newBuilder(uri).POST(BodyPublishers.ofString("{}")).build();
+      assertEquals(415, client.send(request, BodyHandlers.discarding()).statusCode());
+
+      // the declared length is rejected before the body is sent
+      try (Socket socket = new Socket("127.0.0.1", port)) {
+        socket.getOutputStream().write(("POST /hook HTTP/1.1\r\n"
+            + "Host: 127.0.0.1\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Content-Length: " + (SocketIngress.MAX_FRAME_LENGTH + 1) + "\r\n"
+            + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        assertThat(in.readLine(), startsWith("HTTP/1.1 413 "));
+      }
+
+      scheduler.awaitIdle();
+    }
+
+    for (State state : State.values()) {
+      assertThat(spool.discover("default", state), empty());
+    }
+  }
+
+  @Test
+  public void testParseAddress() {
+    assertEquals(new InetSocketAddress(8080), Ingress.parseAddress("8080"));
+    assertEquals(new InetSocketAddress("127.0.0.1", 8080), Ingress.parseAddress("127.0.0.1:8080"));
+  }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class JsonPathTest {
+
+  private final WebHook webhook = new WebHook("", List.of(new Header("X-Foo: bar")),
+      new JSONObject("{\"a\":{\"b\":{\"c\":1}}}"), null, null);
+
+  @Test
+  public void testResolvePayload() {
+    assertEquals(1, JsonPath.compile("$a.b.c").resolve(webhook));
+    assertTrue(JsonPath.compile("$a.b").resolve(webhook) instanceof JSONObject);
+    assertNull(JsonPath.compile("$a.x.c").resolve(webhook));
+    assertNull(JsonPath.compile("$a.b.x").resolve(webhook));
+  }
+
+  @Test
+  public void testResolveHeader() {
+    assertEquals("bar", JsonPath.compile("x-foo").resolve(webhook));
+    assertNull(JsonPath.compile("X-Bar").resolve(webhook));
+  }
+
+  @Test
+  public void testResolveContextWithoutContext() {
+    assertNull(JsonPath.compile("%a.b.c").resolve(webhook));
+  }
+
+  @Test
+  public void testParent() {
+    JsonPath path = JsonPath.compile("$a.b.c");
+    assertEquals("c", path.getLastSegment());
+    assertEquals(JsonPath.compile("$a.b"), path.getParent());
+    assertEquals(JsonPath.compile("$a"), path.getParent().getParent());
+  }
+
+}
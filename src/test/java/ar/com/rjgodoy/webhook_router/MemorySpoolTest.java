@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static ar.com.rjgodoy.webhook_router.filter.Configuration.DEFAULT_QUEUE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class MemorySpoolTest {
+
+  private final MemorySpool spool = new MemorySpool(new File("spool"));
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> names(List<File> files) {
+    return files.stream().map(File::getName).toList();
+  }
+
+  @Test
+  public void testTransitions() throws IOException {
+    assertTrue(spool.write("a", bytes("foo")));
+    assertFalse(spool.write("a", bytes("bar")));
+    assertTrue(spool.write("b", bytes("bar")));
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), contains("a", "b"));
+
+    assertFalse(spool.complete(DEFAULT_QUEUE, "a"));
+    assertTrue(spool.claim(DEFAULT_QUEUE, "a"));
+    assertTrue(spool.fanOut(DEFAULT_QUEUE, "a", "other"));
+    assertFalse(spool.fanOut(DEFAULT_QUEUE, "a", "other"));
+    assertTrue(spool.complete(DEFAULT_QUEUE, "a"));
+    assertFalse(spool.fail(DEFAULT_QUEUE, "a"));
+
+    assertThat(names(spool.discover(DEFAULT_QUEUE, State.PROCESSED)), contains("a"));
+    assertArrayEquals(bytes("foo"), spool.read("other", State.PENDING, "a"));
+    assertThrows(NoSuchFileException.class, () -> spool.read("other", State.FAILED, "a"));
+    assertEquals(Map.of("a", 0, "b", 1), spool.readIndex());
+
+    assertFalse(spool.delete(DEFAULT_QUEUE, State.PENDING, "a"));
+    assertTrue(spool.delete(DEFAULT_QUEUE, State.PROCESSED, "a"));
+    assertThat(spool.discover(DEFAULT_QUEUE, State.PROCESSED), empty());
+    assertTrue(spool.write("a", bytes("baz")));
+  }
+
+  @Test
+  public void testFanOut() throws IOException {
+    spool.write("a", bytes("foo"));
+    assertFalse(spool.fanOut(DEFAULT_QUEUE, "a", "other"));
+    spool.claim(DEFAULT_QUEUE, "a");
+    assertTrue(spool.fanOut(DEFAULT_QUEUE, "a", "other"));
+    assertFalse(spool.fanOut(DEFAULT_QUEUE, "a", "other"));
+    assertTrue(spool.fanOut(DEFAULT_QUEUE, "a", "third"));
+
+    // the copies share the contents of the job
+    byte[] data = spool.read(DEFAULT_QUEUE, State.PROCESSING, "a");
+    assertSame(data, spool.read("other", State.PENDING, "a"));
+    assertSame(data, spool.read("third", State.PENDING, "a"));
+
+    // and their states are independent
+    assertTrue(spool.complete(DEFAULT_QUEUE, "a"));
+    assertThat(names(spool.discoverPending("other")), contains("a"));
+    assertTrue(spool.delete(DEFAULT_QUEUE, State.PROCESSED, "a"));
+    assertArrayEquals(bytes("foo"), spool.read("other", State.PENDING, "a"));
+  }
+
+  /**
+   * Runs the given tasks at once, and returns how many of them returned {@code true}.
+   */
+  @SafeVarargs
+  private static int race(Callable<Boolean>... tasks) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+    try {
+      CyclicBarrier barrier = new CyclicBarrier(tasks.length);
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (Callable<Boolean> task : tasks) {
+        results.add(executor.submit(() -> {
+          barrier.await();
+          return task.call();
+        }));
+      }
+      int count = 0;
+      for (Future<Boolean> result : results) {
+        count += result.get() ? 1 : 0;
+      }
+      return count;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testConcurrentClaim() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      String name = "job" + i;
+      spool.write(name, bytes("foo"));
+      Callable<Boolean> claim = () -> spool.claim(DEFAULT_QUEUE, name);
+      assertEquals(1, race(claim, claim, claim, claim, claim, claim, claim, claim));
+      assertThat(names(spool.discover(DEFAULT_QUEUE, State.PROCESSING)), hasItem(name));
+    }
+    assertThat(spool.discoverPending(DEFAULT_QUEUE), empty());
+  }
+
+  @Test
+  public void testDeleteRacingClaim() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      String name = "job" + i;
+      spool.write(name, bytes("foo"));
+      boolean[] claimed = new boolean[1];
+      assertEquals(1, race(
+          () -> claimed[0] = spool.claim(DEFAULT_QUEUE, name),
+          () -> spool.delete(DEFAULT_QUEUE, State.PENDING, name)));
+
+      // a deleted job cannot be found in any state, and a claimed job was not deleted
+      List<String> processing = names(spool.discover(DEFAULT_QUEUE, State.PROCESSING));
+      assertEquals(claimed[0], processing.contains(name));
+      assertFalse(names(spool.discoverPending(DEFAULT_QUEUE)).contains(name));
+      assertEquals(!claimed[0], spool.write(name, bytes("bar")));
+    }
+  }
+
+  @Test
+  public void testRecover() throws IOException {
+    spool.write("a", bytes("foo"));
+    spool.write("b", bytes("bar"));
+    spool.claim(DEFAULT_QUEUE, "a");
+    assertEquals(1, spool.recover());
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), contains("a", "b"));
+  }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import ar.com.rjgodoy.webhook_router.filter.Configuration;
+import ar.com.rjgodoy.webhook_router.filter.DirectiveParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RetentionSweeperTest {
+
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+  @TempDir
+  Path root;
+
+  private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+  private RetentionSweeper sweeper(String retention) {
+    Configuration config = new DirectiveParser(
+        Arrays.asList(("QUEUE default " + retention + " {\n DROP \n}").split("\n")).iterator())
+            .parseConfiguration();
+    return new RetentionSweeper(new SpoolManager(root.toFile()), config.getQueues(), clock::get);
+  }
+
+  private Path processed(String name) throws IOException {
+    Path dir = root.resolve("default").resolve(State.PROCESSED.getDirectoryName());
+    Files.createDirectories(dir);
+    return Files.writeString(dir.resolve(name), name);
+  }
+
+  private void complete(RetentionSweeper sweeper, String name) throws IOException {
+    processed(name);
+    sweeper.completed("default", name);
+    clock.addAndGet(DAY);
+  }
+
+  private List<String> list() throws IOException {
+    Path dir = root.resolve("default").resolve(State.PROCESSED.getDirectoryName());
+    try (Stream<Path> stream = Files.list(dir)) {
+      return stream.map(path -> path.getFileName().toString()).toList();
+    }
+  }
+
+  @Test
+  public void testRetainLastTasks() throws IOException {
+    RetentionSweeper sweeper = sweeper("RETENTION LAST 2");
+    for (String name : List.of("a", "b", "c", "d")) {
+      complete(sweeper, name);
+    }
+    assertThat(list(), containsInAnyOrder("c", "d"));
+  }
+
+  @Test
+  public void testRetainDays() throws IOException {
+    RetentionSweeper sweeper = sweeper("RETENTION 2 DAYS");
+    for (String name : List.of("a", "b", "c", "d")) {
+      complete(sweeper, name);
+    }
+    // when "d" was completed, "a" was 3 days old and "b" was 2 days old
+    assertThat(list(), containsInAnyOrder("b", "c", "d"));
+
+    clock.addAndGet(5 * DAY);
+    sweeper.sweep();
+    assertThat(list(), empty());
+  }
+
+  @Test
+  public void testRetainLastTasksAndDays() throws IOException {
+    RetentionSweeper sweeper = sweeper("RETENTION LAST 1 AND 2 DAYS");
+    for (String name : List.of("a", "b", "c", "d")) {
+      complete(sweeper, name);
+    }
+    assertThat(list(), containsInAnyOrder("b", "c", "d"));
+
+    clock.addAndGet(5 * DAY);
+    sweeper.sweep();
+    assertThat(list(), containsInAnyOrder("d"));
+  }
+
+  @Test
+  public void testRetainLastTasksOrDays() throws IOException {
+    RetentionSweeper sweeper = sweeper("RETENTION 3 DAYS OR LAST 1");
+    for (String name : List.of("a", "b")) {
+      complete(sweeper, name);
+    }
+    assertThat(list(), containsInAnyOrder("b"));
+  }
+
+  @Test
+  public void testSeedFromProcessedDirectory() throws IOException {
+    long now = clock.get();
+    int i = 0;
+    for (String name : List.of("old", "older", "oldest")) {
+      Files.setLastModifiedTime(processed(name), FileTime.fromMillis(now - ++i * DAY));
+    }
+    RetentionSweeper sweeper = sweeper("RETENTION LAST 3");
+    complete(sweeper, "new");
+    assertThat(list(), containsInAnyOrder("new", "old", "older"));
+  }
+
+}
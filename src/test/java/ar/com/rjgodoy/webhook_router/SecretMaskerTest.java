@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class SecretMaskerTest {
+
+  @Test
+  public void testMask() {
+    SecretMasker masker = new SecretMasker(List.of("he", "she", "hers", "a.b"), 1);
+    assertEquals("u*** *** ***", masker.mask("ushe he hers"));
+    assertEquals("x***y", masker.mask("xshersy"));
+    assertEquals("axb ***", masker.mask("axb a.b"));
+  }
+
+  @Test
+  public void testNoMatch() {
+    SecretMasker masker = new SecretMasker(List.of("secret"), 1);
+    String s = "no secre t here";
+    assertSame(s, masker.mask(s));
+  }
+
+  @Test
+  public void testOverlapping() {
+    SecretMasker masker = new SecretMasker(List.of("abcd", "bc", "cdef"), 1);
+    assertEquals("x***y", masker.mask("xabcdefy"));
+    assertEquals("a***x", masker.mask("abcx"));
+  }
+
+  @Test
+  public void testContext() {
+    Context parent = new Context(null, null);
+    Context child = new Context(parent);
+    child.addSecret("foo");
+    assertEquals("*** bar", child.mask("foo bar"));
+
+    parent.addSecret("bar");
+    assertEquals("*** ***", child.mask("foo bar"));
+    assertEquals("foo ***", parent.mask("foo bar"));
+  }
+
+}
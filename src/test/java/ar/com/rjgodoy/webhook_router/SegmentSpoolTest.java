@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static ar.com.rjgodoy.webhook_router.filter.Configuration.DEFAULT_QUEUE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import ar.com.rjgodoy.webhook_router.SpoolManager.Durability;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SegmentSpoolTest {
+
+  @TempDir
+  Path root;
+
+  private SegmentSpool open(long maxSegmentSize) throws IOException {
+    return new SegmentSpool(root.toFile(), maxSegmentSize, Durability.NONE, 0, 1);
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> names(List<File> files) {
+    return files.stream().map(File::getName).toList();
+  }
+
+  private List<String> segments() throws IOException {
+    try (Stream<Path> stream = Files.list(root.resolve(SegmentSpool.DIRECTORY))) {
+      return stream.map(path -> path.getFileName().toString())
+          .filter(name -> name.endsWith(".seg")).sorted().toList();
+    }
+  }
+
+  @Test
+  public void testTransitions() throws IOException {
+    SegmentSpool spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    assertTrue(spool.write("a", bytes("foo")));
+    assertFalse(spool.write("a", bytes("bar")));
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), contains("a"));
+
+    assertFalse(spool.complete(DEFAULT_QUEUE, "a"));
+    assertTrue(spool.claim(DEFAULT_QUEUE, "a"));
+    assertFalse(spool.claim(DEFAULT_QUEUE, "a"));
+    assertTrue(spool.fanOut(DEFAULT_QUEUE, "a", "other"));
+    assertFalse(spool.fanOut(DEFAULT_QUEUE, "a", "other"));
+    assertTrue(spool.complete(DEFAULT_QUEUE, "a"));
+    assertFalse(spool.fail(DEFAULT_QUEUE, "a"));
+
+    assertThat(spool.discoverPending(DEFAULT_QUEUE), empty());
+    assertThat(names(spool.discover(DEFAULT_QUEUE, State.PROCESSED)), contains("a"));
+    assertThat(names(spool.discoverPending("other")), contains("a"));
+    assertArrayEquals(bytes("foo"), spool.read("other", State.PENDING, "a"));
+    assertTrue(spool.lastModified(DEFAULT_QUEUE, State.PROCESSED, "a") > 0);
+    assertEquals(root.resolve("other/pending/a").toFile(),
+        spool.discoverPending("other").get(0));
+  }
+
+  @Test
+  public void testEnqueue() throws IOException {
+    SegmentSpool spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    Path file = Files.writeString(root.resolve("a"), "foo");
+    assertTrue(spool.enqueue(file.toFile()));
+    assertFalse(Files.exists(file));
+    assertArrayEquals(bytes("foo"), spool.read(DEFAULT_QUEUE, State.PENDING, "a"));
+
+    file = Files.writeString(root.resolve("a"), "bar");
+    assertFalse(spool.enqueue(file.toFile()));
+    assertTrue(Files.exists(file));
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    SegmentSpool spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    spool.write("a", bytes("foo"));
+    spool.write("b", bytes("bar"));
+    spool.write("c", bytes("baz"));
+    spool.claim(DEFAULT_QUEUE, "a");
+    spool.fanOut(DEFAULT_QUEUE, "a", "other");
+    spool.complete(DEFAULT_QUEUE, "a");
+    spool.claim(DEFAULT_QUEUE, "b");
+    spool.fail(DEFAULT_QUEUE, "b");
+
+    spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), contains("c"));
+    assertThat(names(spool.discover(DEFAULT_QUEUE, State.PROCESSED)), contains("a"));
+    assertThat(names(spool.discover(DEFAULT_QUEUE, State.FAILED)), contains("b"));
+    assertThat(names(spool.discoverPending("other")), contains("a"));
+    assertArrayEquals(bytes("bar"), spool.read(DEFAULT_QUEUE, State.FAILED, "b"));
+    assertEquals(Map.of("a", 0, "b", 1, "c", 2), spool.readIndex());
+
+    assertTrue(spool.write("d", bytes("qux")));
+    assertEquals(Map.of("a", 0, "b", 1, "c", 2, "d", 3), spool.readIndex());
+  }
+
+  @Test
+  public void testDeleteSegments() throws IOException {
+    // every record fills a segment
+    SegmentSpool spool = open(1);
+    for (String name : List.of("a", "b", "c")) {
+      spool.write(name, bytes(name));
+      spool.claim(DEFAULT_QUEUE, name);
+      spool.complete(DEFAULT_QUEUE, name);
+    }
+    assertThat(segments(), hasSize(3));
+
+    assertTrue(spool.delete(DEFAULT_QUEUE, State.PROCESSED, "a"));
+    assertFalse(spool.delete(DEFAULT_QUEUE, State.PROCESSED, "a"));
+    assertThat(segments(), contains("00000002.seg", "00000003.seg"));
+
+    // the active segment is deleted once it is sealed
+    spool.delete(DEFAULT_QUEUE, State.PROCESSED, "c");
+    assertThat(segments(), contains("00000002.seg", "00000003.seg"));
+    spool.write("d", bytes("d"));
+    assertThat(segments(), contains("00000002.seg", "00000004.seg"));
+
+    spool = open(1);
+    assertThat(names(spool.discover(DEFAULT_QUEUE, State.PROCESSED)), contains("b"));
+    assertArrayEquals(bytes("b"), spool.read(DEFAULT_QUEUE, State.PROCESSED, "b"));
+  }
+
+  @Test
+  public void testTornWrites() throws IOException {
+    SegmentSpool spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    spool.write("a", bytes("foo"));
+    spool.write("b", bytes("bar"));
+
+    Path directory = root.resolve(SegmentSpool.DIRECTORY);
+    Files.write(directory.resolve("00000001.seg"), new byte[] {0, 0, 0, 0, 0, 0, 0, 9, 0},
+        StandardOpenOption.APPEND);
+    Files.writeString(directory.resolve("state.log"), "P default PEND",
+        StandardOpenOption.APPEND);
+
+    spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), contains("a", "b"));
+    assertTrue(spool.write("c", bytes("baz")));
+
+    spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), contains("a", "b", "c"));
+    assertArrayEquals(bytes("baz"), spool.read(DEFAULT_QUEUE, State.PENDING, "c"));
+  }
+
+  @Test
+  public void testCompactStateLog() throws IOException {
+    SegmentSpool spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    for (int i = 0; i < 500; i++) {
+      spool.write("job" + i, bytes("x"));
+      spool.claim(DEFAULT_QUEUE, "job" + i);
+      spool.complete(DEFAULT_QUEUE, "job" + i);
+      if (i > 0) {
+        spool.delete(DEFAULT_QUEUE, State.PROCESSED, "job" + (i - 1));
+      }
+    }
+    spool.compactIndex();
+    Path log = root.resolve(SegmentSpool.DIRECTORY).resolve("state.log");
+    assertThat(Files.readAllLines(log), hasSize(1));
+
+    // the transitions after the compaction are appended to the new log
+    spool.write("next", bytes("y"));
+    spool.claim(DEFAULT_QUEUE, "next");
+    assertThat(Files.readAllLines(log), hasSize(3));
+
+    spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    assertThat(names(spool.discover(DEFAULT_QUEUE, State.PROCESSED)), contains("job499"));
+    assertThat(names(spool.discover(DEFAULT_QUEUE, State.PROCESSING)), contains("next"));
+    assertFalse(Files.exists(root.resolve(SegmentSpool.DIRECTORY).resolve("state.log.tmp")));
+  }
+
+  @Test
+  public void testDiscoverOrder() throws IOException {
+    SegmentSpool spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    for (String name : List.of("d", "c", "b", "a")) {
+      spool.write(name, bytes(name));
+    }
+    spool.claim(DEFAULT_QUEUE, "b");
+    spool.complete(DEFAULT_QUEUE, "b");
+    spool.claim(DEFAULT_QUEUE, "d");
+    spool.complete(DEFAULT_QUEUE, "d");
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), contains("c", "a"));
+    assertThat(names(spool.discover(DEFAULT_QUEUE, State.PROCESSED)), contains("d", "b"));
+
+    spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), contains("c", "a"));
+    assertThat(names(spool.discover(DEFAULT_QUEUE, State.PROCESSED)), contains("d", "b"));
+  }
+
+  @Test
+  public void testRecover() throws IOException {
+    SegmentSpool spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    spool.write("a", bytes("foo"));
+    spool.write("b", bytes("bar"));
+    spool.claim(DEFAULT_QUEUE, "a");
+
+    spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    assertEquals(1, spool.recover());
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), contains("a", "b"));
+
+    spool = open(SegmentSpool.MAX_SEGMENT_SIZE);
+    assertEquals(0, spool.recover());
+    assertThat(spool.discover(DEFAULT_QUEUE, State.PROCESSING), empty());
+  }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import ar.com.rjgodoy.webhook_router.filter.Configuration;
+import ar.com.rjgodoy.webhook_router.filter.DirectiveParser;
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SocketIngressTest {
+
+  @TempDir
+  Path root;
+
+  private static byte send(SocketChannel channel, String frame) throws IOException {
+    byte[] data = frame.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocate(4 + data.length).putInt(data.length).put(data).flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    ByteBuffer status = ByteBuffer.allocate(1);
+    while (status.hasRemaining()) {
+      if (channel.read(status) < 0) {
+        throw new IOException("closed");
+      }
+    }
+    return status.get(0);
+  }
+
+  @Test
+  public void testReceive() throws Exception {
+    Configuration config = new DirectiveParser(Arrays.asList("""
+        X-GitHub-Event: ping
+        DROP
+        """.split("\n")).iterator()).parseConfiguration();
+
+    SpoolManager spool = new SpoolManager(Files.createDirectory(root.resolve("spool")).toFile());
+    Path socket = root.resolve("router.sock");
+    String webhook = "/hook\n\nX-GitHub-Event: ping\nContent-Type: application/json\n\n{}\n";
+
+    try (WorkerScheduler scheduler = new WorkerScheduler(spool, new Context(spool, config), false);
+        SocketIngress ingress = new SocketIngress(scheduler, socket);
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socket));
+      assertEquals(SocketIngress.ACCEPTED, send(channel, webhook));
+      assertEquals(SocketIngress.ACCEPTED, send(channel, webhook));
+      assertEquals(SocketIngress.REJECTED, send(channel, "/hook\n\nX-GitHub-Event\n\n{}"));
+      scheduler.awaitIdle();
+    }
+
+    List<File> processed = spool.discover("default", State.PROCESSED);
+    assertThat(processed, hasSize(2));
+    assertEquals(webhook, Files.readString(processed.get(0).toPath()));
+  }
+
+  @Test
+  public void testExistingPath() throws Exception {
+    Configuration config = new DirectiveParser(List.of("DROP").iterator()).parseConfiguration();
+    SpoolManager spool = new SpoolManager(Files.createDirectory(root.resolve("spool")).toFile());
+    Path socket = root.resolve("router.sock");
+
+    try (WorkerScheduler scheduler =
+        new WorkerScheduler(spool, new Context(spool, config), false)) {
+      // a socket left behind by a previous process is replaced
+      try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+        server.bind(UnixDomainSocketAddress.of(socket));
+      }
+      assertTrue(Files.exists(socket));
+      try (SocketIngress ingress = new SocketIngress(scheduler, socket)) {
+        // a socket that is in use is not
+        assertThrows(FileAlreadyExistsException.class, () -> new SocketIngress(scheduler, socket));
+      }
+
+      // nor is any other file
+      Files.writeString(socket, "data");
+      assertThrows(FileAlreadyExistsException.class, () -> new SocketIngress(scheduler, socket));
+      assertEquals("data", Files.readString(socket));
+    }
+  }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class SpoolFileReaderTest {
+
+  private static SpoolFileReader reader(String s) {
+    return new SpoolFileReader(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    String payload = "{\"a\":\"á\"}\n";
+    SpoolFileReader reader =
+        reader("/hook\n\nX-Foo:  bar \nContent-Type: application/json\n\n" + payload);
+    assertEquals("/hook", reader.readRequestUri());
+    assertEquals(List.of(new Header("X-Foo", "bar"),
+        new Header("Content-Type", "application/json")), reader.readHeaders());
+    assertEquals(payload.getBytes(StandardCharsets.UTF_8).length, reader.getPayloadLength());
+    assertEquals("á", reader.readPayload().get("a"));
+  }
+
+  @Test
+  public void testCrLf() throws IOException {
+    SpoolFileReader reader = reader("/hook\r\n\r\nX-Foo: bar\r\nX-Bar: baz\r\n\r\n{}");
+    assertEquals("/hook", reader.readRequestUri());
+    assertEquals("baz", reader.readHeaders().getValue("x-bar"));
+    assertEquals(new JSONObject().toString(), reader.readPayload().toString());
+  }
+
+  @Test
+  public void testUtf8() throws IOException {
+    SpoolFileReader reader = reader("/hook?q=ñandú\n\nX-Foo: café\n\n{}");
+    assertEquals("/hook?q=ñandú", reader.readRequestUri());
+    assertEquals("café", reader.readHeaders().getValue("x-foo"));
+  }
+
+  @Test
+  public void testMalformedHeader() throws IOException {
+    SpoolFileReader reader = reader("/hook\n\nX-Foo\n\n{}");
+    reader.readRequestUri();
+    assertThrows(IOException.class, reader::readHeaders);
+  }
+
+  @Test
+  public void testUnterminated() throws IOException {
+    SpoolFileReader reader = reader("/hook\n\nX-Foo: bar\n");
+    reader.readRequestUri();
+    assertThrows(EOFException.class, reader::readHeaders);
+  }
+
+}
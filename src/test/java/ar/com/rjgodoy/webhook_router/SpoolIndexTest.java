@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SpoolIndexTest {
+
+  @TempDir
+  Path directory;
+
+  private long countSegments() throws IOException {
+    try (Stream<Path> stream = Files.list(directory)) {
+      return stream.count();
+    }
+  }
+
+  @Test
+  public void testReadEmpty() throws IOException {
+    assertThat(new SpoolIndex(directory.resolve("default")).read(), is(anEmptyMap()));
+  }
+
+  @Test
+  public void testAppendAndRotate() throws IOException {
+    SpoolIndex index = new SpoolIndex(directory, 4);
+    for (String name : List.of("a", "b", "c", "d")) {
+      index.append(name);
+      index.append(name);
+    }
+    assertEquals(4, countSegments());
+    assertEquals(Map.of("a", 0, "b", 1, "c", 2, "d", 3), index.read());
+  }
+
+  @Test
+  public void testReadBetweenAppendAndGroupFlush() throws IOException {
+    SpoolIndex index = new SpoolIndex(directory, 4, true);
+    index.append("a");
+    assertFalse(index.isForced());
+
+    // reading writes the buffered entries without forcing them
+    assertEquals(Map.of("a", 0), index.read());
+    index.append("bc");
+    assertEquals(Map.of("a", 0, "bc", 1), index.read());
+    assertFalse(index.isForced());
+
+    // a forced flush with an empty buffer still forces what was written
+    index.flush(true);
+    assertTrue(index.isForced());
+
+    // as well as the sealed segments, when the flush starts a new segment
+    index.append("d");
+    index.read();
+    index.append("e");
+    index.flush(true);
+    assertTrue(index.isForced());
+    assertEquals(2, countSegments());
+  }
+
+  @Test
+  public void testLegacyIndexIsReadFirst() throws IOException {
+    Files.write(directory.resolve(".index"), List.of("a", "b"));
+    SpoolIndex index = new SpoolIndex(directory);
+    index.append("c");
+    assertEquals(Map.of("a", 0, "b", 1, "c", 2), index.read());
+  }
+
+  @Test
+  public void testCompact() throws IOException {
+    Files.write(directory.resolve(".index"), List.of("a", "b"));
+    SpoolIndex index = new SpoolIndex(directory, 4);
+    for (String name : List.of("c", "d", "e", "f")) {
+      index.append(name);
+    }
+
+    index.compact(Set.of("b", "d")::contains);
+    // the active segment (e, f) is not compacted
+    assertEquals(Map.of("b", 0, "d", 1, "e", 2, "f", 3), index.read());
+    assertEquals(3, countSegments());
+
+    index.compact(Set.of("f")::contains);
+    assertEquals(Map.of("e", 0, "f", 1), index.read());
+    assertEquals(1, countSegments());
+  }
+
+  @Test
+  public void testCompactionDue() throws IOException {
+    SpoolIndex index = new SpoolIndex(directory, 1);
+    // each append after the first one seals the active segment
+    for (int i = 0; i <= SpoolIndex.COMPACT_SEGMENTS; i++) {
+      assertFalse(index.isCompactionDue());
+      index.append("job" + i);
+    }
+    assertTrue(index.isCompactionDue());
+
+    index.compact(name -> false);
+    assertFalse(index.isCompactionDue());
+    assertEquals(Map.of("job" + SpoolIndex.COMPACT_SEGMENTS, 0), index.read());
+  }
+
+}
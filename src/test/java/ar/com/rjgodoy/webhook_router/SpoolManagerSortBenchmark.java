@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link SpoolStore#sort(List, Map)} against the previous implementation, which looked
+ * up the position of each pending file with {@code List.indexOf}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SpoolManagerSortBenchmark {
+
+  @Param({"10000", "100000"})
+  private int size;
+
+  private List<String> lines;
+  private List<File> pending;
+
+  @Setup
+  public void setup() {
+    lines = new ArrayList<>(size);
+    pending = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      String name = String.format("%08x-%d", i * 2654435761L, i);
+      lines.add(name);
+      pending.add(new File(name));
+    }
+    Collections.shuffle(pending, new Random(0));
+  }
+
+  private static List<File> sortIndexOf(List<File> files, List<String> index) {
+    record Pair(File file, int index) {};
+    return files.stream()
+        .map(f -> new Pair(f, index.indexOf(f.getName())))
+        .filter(pair -> pair.index >= 0)
+        .sorted(Comparator.comparing(Pair::index))
+        .map(Pair::file).toList();
+  }
+
+  @Benchmark
+  public List<File> indexOf() {
+    return sortIndexOf(pending, lines);
+  }
+
+  @Benchmark
+  public List<File> hashed() {
+    // includes the cost of building the index, as done by readIndex
+    Map<String, Integer> index = new HashMap<>();
+    lines.forEach(line -> index.putIfAbsent(line, index.size()));
+    return SpoolStore.sort(pending, index);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(SpoolManagerSortBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static ar.com.rjgodoy.webhook_router.filter.Configuration.DEFAULT_QUEUE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import ar.com.rjgodoy.webhook_router.SpoolManager.Durability;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SpoolManagerTest {
+
+  @TempDir
+  Path root;
+
+  private static List<String> names(List<File> files) {
+    return files.stream().map(File::getName).toList();
+  }
+
+  @Test
+  public void testSort() {
+    Map<String, Integer> index = Map.of("a", 0, "b", 1, "c", 2);
+    List<File> files = List.of(new File("c"), new File("a"), new File("b"));
+    assertThat(names(SpoolStore.sort(files, index)), contains("a", "b", "c"));
+  }
+
+  @Test
+  public void testSortDiscardsUnindexed() {
+    Map<String, Integer> index = Map.of("a", 0, "b", 1);
+    List<File> files = List.of(new File("x"), new File("b"), new File("a"));
+    assertThat(names(SpoolStore.sort(files, index)), contains("a", "b"));
+    assertThat(SpoolStore.sort(List.of(new File("x")), index), empty());
+  }
+
+  @Test
+  public void testWrite() throws Exception {
+    for (Durability durability : Durability.values()) {
+      File directory = Files.createDirectory(root.resolve(durability.name())).toFile();
+      SpoolManager spool = new SpoolManager(directory, durability, 0, 1);
+      assertTrue(spool.write("a", new byte[] {'x'}));
+      assertTrue(spool.write("b", new byte[] {'y'}));
+      assertFalse(spool.write("a", new byte[] {'z'}));
+      assertTrue(spool.getFile(DEFAULT_QUEUE, State.PENDING, "a").isFile());
+      assertEquals(Map.of("a", 0, "b", 1), spool.readIndex());
+    }
+  }
+
+  @Test
+  public void testGroupCommit() throws Exception {
+    // the interval is long enough that the writes only return because the group is full
+    SpoolManager spool = new SpoolManager(root.toFile(), Durability.GROUP, 60_000, 4);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+          String name = "job" + i;
+          results.add(executor.submit(() -> spool.write(name, new byte[] {'x'})));
+        }
+        for (Future<Boolean> result : results) {
+          assertTrue(result.get());
+        }
+      });
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(4, spool.readIndex().size());
+  }
+
+  @Test
+  public void testRecover() throws Exception {
+    SpoolManager spool = new SpoolManager(root.toFile());
+    spool.write("a", new byte[] {'x'});
+    spool.write("b", new byte[] {'y'});
+    spool.claim(DEFAULT_QUEUE, "a");
+    spool.fanOut(DEFAULT_QUEUE, "a", "other");
+    spool.claim("other", "a");
+
+    spool = new SpoolManager(root.toFile());
+    assertEquals(2, spool.recover());
+    assertThat(names(spool.discoverPending(DEFAULT_QUEUE)), containsInAnyOrder("a", "b"));
+    assertThat(names(spool.discoverPending("other")), contains("a"));
+    assertThat(spool.discover(DEFAULT_QUEUE, State.PROCESSING), empty());
+  }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import ar.com.rjgodoy.webhook_router.filter.Configuration;
+import ar.com.rjgodoy.webhook_router.filter.DirectiveParser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.file.PathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the time needed to enqueue and process a batch of webhooks with each spool format, so
+ * that the throughput of the rules ({@code memory}) can be told apart from the cost of the disk
+ * I/O ({@code files} and {@code segments}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpoolStoreBenchmark {
+
+  private static final int JOBS = 10000;
+
+  @Param({"memory", "segments", "files"})
+  private String format;
+
+  private Configuration config;
+
+  private byte[][] jobs;
+
+  private Path root;
+
+  private SpoolStore spool;
+
+  @Setup
+  public void setup() {
+    config = new DirectiveParser(Arrays.asList("""
+        QUEUE other {
+          DROP
+        }
+
+        QUEUE default {
+          X-GitHub-Event: push
+          $ref: refs/heads/main
+          ENQUEUE other
+          DROP
+        }
+        """.split("\n")).iterator()).parseConfiguration();
+
+    jobs = new byte[JOBS][];
+    for (int i = 0; i < JOBS; i++) {
+      String event = i % 4 == 0 ? "ping" : "push";
+      jobs[i] = ("/hook\n\nX-GitHub-Event: " + event + "\nContent-Type: application/json\n\n"
+          + "{\"ref\":\"refs/heads/main\",\"id\":" + i + "}\n").getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void open() throws IOException {
+    root = Files.createTempDirectory("spool");
+    File directory = root.toFile();
+    switch (format) {
+      case "memory":
+        spool = new MemorySpool(directory);
+        break;
+      case "segments":
+        spool = new SegmentSpool(directory, SpoolManager.Durability.NONE, 0, 1);
+        break;
+      default:
+        spool = new SpoolManager(directory);
+        break;
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void close() throws IOException {
+    PathUtils.deleteDirectory(root);
+  }
+
+  @Benchmark
+  public SpoolStore process() throws Exception {
+    for (int i = 0; i < JOBS; i++) {
+      spool.write("job" + i, jobs[i]);
+    }
+    Context context = new Context(spool, config);
+    try (WorkerScheduler scheduler = new WorkerScheduler(spool, context, false)) {
+      scheduler.schedule();
+      scheduler.awaitIdle();
+    }
+    return spool;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(SpoolStoreBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import ar.com.rjgodoy.webhook_router.filter.Configuration;
+import ar.com.rjgodoy.webhook_router.filter.DirectiveParser;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class WebHookTest {
+
+  private static WebHook webhook() {
+    JSONObject payload = new JSONObject("{\"a\":{\"b\":{\"c\":1}},\"d\":{\"e\":2}}");
+    return new WebHook("", List.of(new Header("X-Foo: 1")), payload, null,
+        new Context(null, null));
+  }
+
+  @Test
+  public void testCopyOnWritePayload() {
+    WebHook original = webhook();
+    WebHook copy = new WebHook(original);
+    assertSame(original.getPayload(), copy.getPayload());
+
+    copy.getWritablePayload(JsonPath.compile("$a.b")).put("c", 3);
+    assertEquals(1, original.resolve("$a.b.c"));
+    assertEquals(3, copy.resolve("$a.b.c"));
+
+    // untouched subtrees are still shared
+    assertSame(original.resolve("$d"), copy.resolve("$d"));
+
+    // the original copies on write as well
+    original.getWritablePayload().put("f", 4);
+    assertNull(copy.resolve("$f"));
+    assertEquals(4, original.resolve("$f"));
+  }
+
+  @Test
+  public void testCopyOnWriteTwice() {
+    WebHook copy = new WebHook(webhook());
+    JSONObject b = copy.getWritablePayload(JsonPath.compile("$a.b"));
+    assertSame(b, copy.getWritablePayload(JsonPath.compile("$a.b")));
+  }
+
+  @Test
+  public void testCopyOnWriteHeaders() {
+    WebHook original = webhook();
+    WebHook copy = new WebHook(original);
+    copy.setHeader("X-Foo", "2");
+    copy.setHeader("X-Bar", "3");
+    assertEquals("1", original.getHeader("X-Foo").get());
+    assertEquals("2", copy.getHeader("X-Foo").get());
+    assertEquals(1, original.getHeaders().size());
+  }
+
+  @Test
+  public void testWritableNotAnObject() {
+    WebHook w = webhook();
+    assertNull(w.getWritablePayload(JsonPath.compile("$a.b.c")));
+    assertNull(w.getWritablePayload(JsonPath.compile("$x")));
+  }
+
+  @Test
+  public void testHeaderWrittenByEarlierBranch() {
+    // the keyed branches are dispatched on the headers, which the first branch modifies
+    Configuration config = new DirectiveParser(Arrays.asList("""
+        QUEUE default {
+          SET X-Foo: bar
+
+          X-Foo: bar
+          SET X-Hit: yes
+
+          X-Foo: baz
+          DROP
+        }
+        """.split("\n")).iterator()).parseConfiguration();
+    WebHook webhook = new WebHook("", List.of(new Header("X-Foo: 1")), new JSONObject(), null,
+        new Context(null, config));
+    config.call("default", webhook);
+    assertEquals("bar", webhook.getHeader("X-Foo").get());
+    assertEquals("yes", webhook.getHeader("X-Hit").orElse(null));
+  }
+
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import ar.com.rjgodoy.webhook_router.SpoolStore.State;
+import ar.com.rjgodoy.webhook_router.filter.Configuration;
+import ar.com.rjgodoy.webhook_router.filter.DirectiveParser;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WorkerSchedulerTest {
+
+  @TempDir
+  Path root;
+
+  private static Configuration parse(String lines) {
+    return new DirectiveParser(Arrays.asList(lines.split("\n")).iterator()).parseConfiguration();
+  }
+
+  private void write(SpoolStore spool, String name, String event) throws IOException {
+    write(spool, name, event, "{}");
+  }
+
+  private void write(SpoolStore spool, String name, String event, String payload)
+      throws IOException {
+    Path file = root.resolve(name);
+    Files.writeString(file, "/hook\n\nX-GitHub-Event: " + event
+        + "\nContent-Type: application/json\n\n" + payload + "\n");
+    spool.enqueue(file.toFile());
+  }
+
+  private List<String> list(String queueName, State state) throws IOException {
+    Path dir = root.resolve(queueName).resolve(state.getDirectoryName());
+    if (!Files.isDirectory(dir)) {
+      return List.of();
+    }
+    try (Stream<Path> stream = Files.list(dir)) {
+      return stream.map(path -> path.getFileName().toString()).toList();
+    }
+  }
+
+  @Test
+  public void testProcessQueues() throws Exception {
+    Configuration config = parse("""
+        QUEUE other {
+          DROP
+        }
+
+        QUEUE default {
+          X-GitHub-Event: push
+          ENQUEUE other
+          DROP
+        }
+        """);
+
+    SpoolManager spool = new SpoolManager(root.toFile());
+    write(spool, "a", "push");
+    write(spool, "b", "ping");
+    write(spool, "c", "push");
+
+    try (WorkerScheduler scheduler =
+        new WorkerScheduler(spool, new Context(spool, config), false)) {
+      scheduler.schedule();
+      scheduler.awaitIdle();
+    }
+
+    assertThat(list("default", State.PENDING), empty());
+    assertThat(list("default", State.PROCESSED), containsInAnyOrder("a", "c"));
+    assertThat(list("default", State.FAILED), containsInAnyOrder("b"));
+    assertThat(list("other", State.PENDING), empty());
+    assertThat(list("other", State.PROCESSED), containsInAnyOrder("a", "c"));
+  }
+
+  @Test
+  public void testProcessSegmentSpool() throws Exception {
+    Configuration config = parse("""
+        QUEUE other {
+          DROP
+        }
+
+        QUEUE default {
+          X-GitHub-Event: push
+          ENQUEUE other
+          DROP
+        }
+        """);
+
+    SegmentSpool spool =
+        new SegmentSpool(root.toFile(), SpoolManager.Durability.NONE, 0, 1);
+    write(spool, "a", "push");
+    write(spool, "b", "ping");
+    write(spool, "c", "push");
+
+    try (WorkerScheduler scheduler =
+        new WorkerScheduler(spool, new Context(spool, config), false)) {
+      scheduler.schedule();
+      scheduler.awaitIdle();
+    }
+
+    assertThat(spool.discoverPending("default"), empty());
+    assertThat(spool.discover("default", State.PROCESSED).stream().map(File::getName).toList(),
+        containsInAnyOrder("a", "c"));
+    assertThat(spool.discover("default", State.FAILED).stream().map(File::getName).toList(),
+        containsInAnyOrder("b"));
+    assertThat(spool.discoverPending("other"), empty());
+    assertThat(spool.discover("other", State.PROCESSED).stream().map(File::getName).toList(),
+        containsInAnyOrder("a", "c"));
+    assertThat(list("default", State.PROCESSED), empty());
+  }
+
+  @Test
+  public void testProcessOrderedQueue() throws Exception {
+    Configuration config = parse("""
+        QUEUE default ORDERED BY ${repository} {
+          X-GitHub-Event: push
+          DROP
+        }
+        """);
+
+    SpoolManager spool = new SpoolManager(root.toFile());
+    for (int i = 0; i < 20; i++) {
+      write(spool, "job" + i, i % 5 == 0 ? "ping" : "push",
+          "{\"repository\":\"r" + i % 3 + "\"}");
+    }
+
+    try (WorkerScheduler scheduler =
+        new WorkerScheduler(spool, new Context(spool, config), false, 4)) {
+      scheduler.schedule();
+      scheduler.awaitIdle();
+    }
+
+    assertThat(list("default", State.PENDING), empty());
+    assertThat(list("default", State.PROCESSING), empty());
+    assertThat(list("default", State.FAILED),
+        containsInAnyOrder("job0", "job5", "job10", "job15"));
+    assertThat(list("default", State.PROCESSED), hasSize(16));
+  }
+
+  @Test
+  public void testProcessAsync() throws Exception {
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maxActive = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", exchange -> {
+      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      active.decrementAndGet();
+      int status = exchange.getRequestURI().getPath().equals("/fail") ? 500 : 200;
+      exchange.sendResponseHeaders(status, -1);
+      exchange.close();
+    });
+    server.start();
+
+    String url = "http://127.0.0.1:" + server.getAddress().getPort();
+    Configuration config = parse("""
+        QUEUE default {
+          POST %1$s/${path}
+          POST %1$s/${path}
+          POST %1$s/${path}
+        }
+        """.formatted(url));
+
+    SpoolManager spool = new SpoolManager(root.toFile());
+    write(spool, "a", "push", "{\"path\":\"ok\"}");
+    write(spool, "b", "push", "{\"path\":\"fail\"}");
+
+    Context context = new Context(spool, config);
+    context.async();
+    try (WorkerScheduler scheduler = new WorkerScheduler(spool, context, false)) {
+      scheduler.schedule();
+      scheduler.awaitIdle();
+    } finally {
+      server.stop(0);
+    }
+
+    assertThat(maxActive.get(), greaterThan(1));
+    assertThat(list("default", State.PROCESSED), containsInAnyOrder("a"));
+    assertThat(list("default", State.FAILED), containsInAnyOrder("b"));
+  }
+
+  @Test
+  public void testRuleThrows() throws Exception {
+    // HttpClient refuses to send a restricted header before any connection is attempted
+    Configuration config = parse("""
+        QUEUE default {
+          X-GitHub-Event: push
+          POST http://127.0.0.1:1/hook
+        }
+        """);
+
+    SpoolManager spool = new SpoolManager(root.toFile());
+    Path file = root.resolve("a");
+    Files.writeString(file, "/hook\n\nX-GitHub-Event: push\nConnection: close"
+        + "\nContent-Type: application/json\n\n{}\n");
+    spool.enqueue(file.toFile());
+    write(spool, "b", "ping");
+
+    try (WorkerScheduler scheduler =
+        new WorkerScheduler(spool, new Context(spool, config), false)) {
+      scheduler.schedule();
+      scheduler.awaitIdle();
+    }
+
+    assertThat(list("default", State.PROCESSING), empty());
+    assertThat(list("default", State.FAILED), containsInAnyOrder("a", "b"));
+  }
+
+  @Test
+  public void testForwardOriginalPayload() throws Exception {
+    Map<String, String> bodies = new ConcurrentHashMap<>();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      bodies.put(exchange.getRequestURI().getPath(),
+          new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+    });
+    server.start();
+
+    String url = "http://127.0.0.1:" + server.getAddress().getPort();
+    Configuration config = parse("""
+        QUEUE default {
+          POST %1$s/original
+          SET $x: 1
+          POST %1$s/modified
+        }
+        """.formatted(url));
+
+    SpoolManager spool = new SpoolManager(root.toFile());
+    write(spool, "a", "push", "{ \"n\" : 1.50 }");
+
+    Context context = new Context(spool, config);
+    try (WorkerScheduler scheduler = new WorkerScheduler(spool, context, false)) {
+      scheduler.schedule();
+      scheduler.awaitIdle();
+    } finally {
+      server.stop(0);
+    }
+
+    assertEquals("{ \"n\" : 1.50 }\n", bodies.get("/original"));
+    assertTrue(new JSONObject("{\"n\":1.5,\"x\":1}")
+        .similar(new JSONObject(bodies.get("/modified"))), bodies.get("/modified"));
+  }
+
+  @Test
+  public void testLazyPayload() throws Exception {
+    Configuration config = parse("""
+        QUEUE default {
+          X-GitHub-Event: ping
+          DROP
+
+          X-GitHub-Event: push
+          ENQUEUE other
+          DROP
+        }
+        QUEUE other {
+          $action: opened
+          DROP
+        }
+        """);
+
+    // header-only rules do not parse the payload
+    SpoolManager spool = new SpoolManager(root.toFile());
+    write(spool, "a", "ping", "{ malformed");
+    write(spool, "b", "push", "{ malformed");
+
+    Context context = new Context(spool, config);
+    try (WorkerScheduler scheduler = new WorkerScheduler(spool, context, false)) {
+      scheduler.schedule();
+      scheduler.awaitIdle();
+    }
+
+    assertThat(list("default", State.PROCESSED), containsInAnyOrder("a", "b"));
+    assertThat(list("other", State.FAILED), containsInAnyOrder("b"));
+  }
+
+}
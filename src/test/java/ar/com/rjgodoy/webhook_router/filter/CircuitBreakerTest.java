@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import ar.com.rjgodoy.webhook_router.filter.CircuitBreaker.State;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private final CircuitBreaker breaker =
+      new CircuitBreaker("jenkins:8080", 3, Duration.ofSeconds(10), clock::get);
+
+  private void fail(int times) {
+    for (int i = 0; i < times; i++) {
+      assertTrue(breaker.tryAcquire());
+      breaker.failure();
+    }
+  }
+
+  @Test
+  public void testOpenAfterConsecutiveFailures() {
+    fail(2);
+    assertTrue(breaker.tryAcquire());
+    breaker.success();
+    fail(2);
+    assertEquals(State.CLOSED, breaker.getState());
+    fail(1);
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testHalfOpenProbe() {
+    fail(3);
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    assertTrue(breaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    // only one probe is sent
+    assertFalse(breaker.tryAcquire());
+    breaker.success();
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testFailedProbe() {
+    fail(3);
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    fail(1);
+    assertEquals(State.OPEN, breaker.getState());
+    clock.addAndGet(Duration.ofSeconds(5).toNanos());
+    assertFalse(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testCancelledProbe() {
+    fail(3);
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    assertTrue(breaker.tryAcquire());
+    breaker.cancel();
+    assertTrue(breaker.tryAcquire());
+  }
+
+}
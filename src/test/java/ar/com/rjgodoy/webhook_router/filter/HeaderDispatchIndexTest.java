@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import ar.com.rjgodoy.webhook_router.Header;
+import ar.com.rjgodoy.webhook_router.WebHook;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class HeaderDispatchIndexTest {
+
+  private static List<Directive> branches(String lines) {
+    var parser = new DirectiveParser(Arrays.asList(lines.split("\n")).iterator());
+    return ((OrSequence) parser.parseOrSequence()).getDirectives();
+  }
+
+  private static WebHook webhook(String... headers) {
+    return new WebHook("", Arrays.stream(headers).map(Header::new).toList(), new JSONObject(),
+        null, null);
+  }
+
+  private static BitSet bits(int... indices) {
+    BitSet bits = new BitSet();
+    Arrays.stream(indices).forEach(bits::set);
+    return bits;
+  }
+
+  private final List<Directive> branches = branches("""
+      X-GitHub-Event: push
+      DROP
+
+      X-GitHub-Event: ping
+      DROP
+
+      Host: example.org
+      DROP
+
+      X-GitHub-Event:startswith pu
+      DROP
+
+      X-GitHub-Event: ${event}
+      DROP
+
+      otherwise x-github-event: push
+
+      DROP
+      """);
+
+  @Test
+  public void testSelect() {
+    HeaderDispatchIndex index = HeaderDispatchIndex.build(branches);
+    assertEquals(7, index.size());
+    assertEquals(bits(0, 3, 4, 5, 6), index.select(webhook("X-GitHub-Event: push")));
+    assertEquals(bits(1, 2, 3, 4, 6), index.select(webhook("Host: example.org",
+        "x-github-event: ping")));
+    assertEquals(bits(3, 4, 6), index.select(webhook()));
+  }
+
+  @Test
+  public void testNotEnoughKeyedBranches() {
+    assertNull(HeaderDispatchIndex.build(branches("""
+        X-GitHub-Event: push
+        DROP
+
+        DROP
+        """)));
+  }
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import java.net.URI;
+import org.junit.jupiter.api.Test;
+
+public class HttpClientsTest {
+
+  @Test
+  public void testSameDestination() {
+    assertThat(HttpClients.get(URI.create("http://jenkins:8080/git/notifyCommit?url=a")),
+        sameInstance(HttpClients.get(URI.create("HTTP://Jenkins:8080/job/build"))));
+  }
+
+  @Test
+  public void testDifferentDestination() {
+    var client = HttpClients.get(URI.create("http://jenkins:8080/"));
+    assertThat(HttpClients.get(URI.create("http://jenkins:8081/")), not(sameInstance(client)));
+    assertThat(HttpClients.get(URI.create("https://jenkins:8080/")), not(sameInstance(client)));
+  }
+
+}
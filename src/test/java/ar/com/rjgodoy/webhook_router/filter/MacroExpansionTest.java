@@ -16,9 +16,11 @@
 package ar.com.rjgodoy.webhook_router.filter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import ar.com.rjgodoy.webhook_router.Header;
 import ar.com.rjgodoy.webhook_router.WebHook;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 
@@ -33,5 +35,26 @@ public class MacroExpansionTest {
     assertEquals("1", new MacroExpansion("a.b.c").eval(w));
   }
 
-}
+  @Test
+  public void testClassifiedHeader() {
+    WebHook w = new WebHook("", List.of(new Header("X-Foo: bar")), new JSONObject(), null, null);
+    MacroExpansion expansion = new MacroExpansion("X-Foo");
+    expansion.classify(Set.of(), Set.of(), Set.of());
+    assertEquals("bar", expansion.eval(w));
+
+    // the payload is not looked up again, since the configuration never writes it
+    w.getPayload().put("X-Foo", "baz");
+    assertEquals("bar", expansion.eval(w));
+  }
 
+  @Test
+  public void testClassifiedWrittenElement() {
+    WebHook w = new WebHook("", List.of(new Header("X-Foo: bar")), new JSONObject(), null, null);
+    MacroExpansion expansion = new MacroExpansion("X-Foo");
+    expansion.classify(Set.of(), Set.of(), Set.of("X-Foo"));
+    assertEquals("bar", expansion.eval(w));
+    w.getPayload().put("X-Foo", "baz");
+    assertEquals("baz", expansion.eval(w));
+  }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import ar.com.rjgodoy.webhook_router.Header;
+import ar.com.rjgodoy.webhook_router.WebHook;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link MacroString#eval(WebHook)} against the previous implementation, which
+ * concatenated all the parts and then collapsed whitespace with a regular expression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MacroStringBenchmark {
+
+  private MacroString string;
+  private WebHook webhook;
+
+  @Setup
+  public void setup() {
+    string = new MacroString(List.of(
+        new MacroLiteral("https://example.com/api/v1/"),
+        new MacroExpansion("repository.name"),
+        new MacroLiteral("/issues?state=open&label="),
+        new MacroExpansion("X-Label"),
+        new MacroLiteral("   &sender="),
+        new MacroExpansion("sender.login")));
+
+    JSONObject payload = new JSONObject();
+    payload.put("repository", new JSONObject().put("name", "webhook-router"));
+    payload.put("sender", new JSONObject().put("login", "octocat"));
+    webhook = new WebHook("", List.of(new Header("X-Label", "needs  triage")), payload, null, null);
+  }
+
+  private static String evalRegex(MacroString string, WebHook webhook) {
+    StringBuilder sb = new StringBuilder();
+    for (MacroStringPart part : string.parts()) {
+      String s = part.eval(webhook);
+      if (s == null) {
+        return null;
+      }
+      sb.append(s);
+    }
+    return sb.toString().replaceAll("\\s+", " ");
+  }
+
+  @Benchmark
+  public String regex() {
+    return evalRegex(string, webhook);
+  }
+
+  @Benchmark
+  public String compiled() {
+    return string.eval(webhook);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(MacroStringBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import ar.com.rjgodoy.webhook_router.Header;
+import ar.com.rjgodoy.webhook_router.WebHook;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class MacroStringTest {
+
+  private static WebHook webhook(String value) {
+    return new WebHook("", List.of(new Header("X-Foo", value)), new JSONObject(), null, null);
+  }
+
+  private static MacroString macro(String before, String after) {
+    return new MacroString(List.of(new MacroLiteral(before), new MacroExpansion("X-Foo"),
+        new MacroEscape('\t'), new MacroLiteral(after)));
+  }
+
+  @Test
+  public void testCollapseWhitespace() {
+    assertEquals("a b c d ", macro("a  ", "\n c d  ").eval(webhook(" \t b ")));
+    assertEquals(" x y", macro(" ", "y").eval(webhook("x")));
+    assertEquals(" ", macro(" ", " ").eval(webhook("")));
+  }
+
+  @Test
+  public void testMissingExpansion() {
+    MacroString string =
+        new MacroString(List.of(new MacroLiteral("a"), new MacroExpansion("X-Bar")));
+    assertNull(string.eval(webhook("foo")));
+  }
+
+  @Test
+  public void testSameAsRegex() {
+    Random random = new Random(0);
+    String alphabet = "ab \t\n\r\f\u000B";
+    for (int n = 0; n < 1000; n++) {
+      String[] s = new String[3];
+      for (int i = 0; i < s.length; i++) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = random.nextInt(5); j > 0; j--) {
+          sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        s[i] = sb.toString();
+      }
+      String expected = (s[0] + s[1] + "\t" + s[2]).replaceAll("\\s+", " ");
+      assertEquals(expected, macro(s[0], s[2]).eval(webhook(s[1])));
+    }
+  }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class NeedsPayloadTest {
+
+  private static boolean needsPayload(String lines) {
+    var parser = new DirectiveParser(Arrays.asList(lines.split("\n")).iterator());
+    return parser.parseConfiguration().getQueues().stream().anyMatch(QueueDecl::needsPayload);
+  }
+
+  @Test
+  public void testHeaderOnly() {
+    assertFalse(needsPayload("""
+        X-GitHub-Event: ping
+        DROP
+
+        X-GitHub-Event: push
+        POST http://localhost/${env.HOME}
+
+        otherwise ENQUEUE other
+        """));
+  }
+
+  @Test
+  public void testMacroExpansion() {
+    assertTrue(needsPayload("""
+        X-GitHub-Event: ping
+        LOG ${X-GitHub-Delivery}
+        """));
+  }
+
+  @Test
+  public void testPayloadPredicate() {
+    assertTrue(needsPayload("""
+        $action: opened
+        DROP
+        """));
+  }
+
+  @Test
+  public void testInto() {
+    assertTrue(needsPayload("""
+        GET http://localhost/ INTO response
+        """));
+  }
+
+  @Test
+  public void testCall() {
+    assertTrue(needsPayload("""
+        CALL foo
+        """));
+  }
+
+}
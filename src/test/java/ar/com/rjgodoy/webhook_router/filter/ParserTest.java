@@ -32,6 +32,7 @@ import ar.com.rjgodoy.webhook_router.filter.CaseDirective.ElseClause;
 import ar.com.rjgodoy.webhook_router.filter.CaseDirective.WhenClause;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.hamcrest.Matcher;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
@@ -659,6 +660,45 @@ public class ParserTest {
         is(PostAction.builder().macro(new MacroString("http://example.com")).into("$foo").build()));
   }
 
+  @Test
+  public void testPostRate() {
+    var d = parser("POST http://example.com RATE 10/s").scanAction();
+    assertThat(d,
+        is(PostAction.builder().macro(new MacroString("http://example.com"))
+            .rate(new RateLimit(10, TimeUnit.SECONDS, null)).build()));
+  }
+
+  @Test
+  public void testGetIntoRateAs() {
+    var d = parser("GET http://example.com INTO $foo RATE 5000/h AS github").scanAction();
+    assertThat(d,
+        is(GetAction.builder().macro(new MacroString("http://example.com")).into("$foo")
+            .rate(new RateLimit(5000, TimeUnit.HOURS, "github")).build()));
+  }
+
+  @Test
+  public void testConflictingRateAs() {
+    parser("""
+        GET http://example.com/a RATE 10/s AS github
+
+        GET http://example.com/b RATE 10/s AS github
+        """).parseConfiguration();
+    assertThat(assertThrows(RuntimeParserException.class, () -> {
+      parser("""
+          GET http://example.com/a RATE 10/s AS github
+
+          GET http://example.com/b RATE 5/s AS github
+          """).parseConfiguration();
+    }).getMessage(), containsString("Conflicting rate for github"));
+  }
+
+  @Test
+  public void testPostInvalidRate() {
+    RuntimeParserException e = assertThrows(RuntimeParserException.class,
+        () -> parser("POST http://example.com RATE 10/d").scanAction());
+    assertThat(e.getMessage(), containsString("Expected RATE <number>/(s|m|h)"));
+  }
+
   @Test
   public void testPostIntoWith() {
     var d = parser("POST http://example.com INTO $foo WITH {}").scanAction();
@@ -779,6 +819,29 @@ public class ParserTest {
     assertThat(queueDecl.getBody(), isADropAction());
   }
 
+  @Test
+  public void testQueueDeclarationOrderedBy() {
+    String script = "QUEUE my_queue ORDERED BY ${repository.full_name} { DROP\n }";
+    Directive result = parser(script).scanQueueDecl();
+
+    assertThat(result, isA(QueueDecl.class.asSubclass(Directive.class)));
+    QueueDecl queueDecl = (QueueDecl) result;
+
+    assertThat(queueDecl.getName(), is("my_queue"));
+    assertTrue(queueDecl.isOrdered());
+    assertThat(queueDecl.getBody(), isADropAction());
+    assertFalse(((QueueDecl) parser("QUEUE my_queue { DROP\n }").scanQueueDecl()).isOrdered());
+  }
+
+  @Test
+  public void testQueueDeclarationOrderedWithoutBy() {
+    String script = "QUEUE my_queue ORDERED ${repository.full_name} { DROP\n }";
+    RuntimeParserException e = assertThrows(RuntimeParserException.class, () -> {
+      parser(script).scanQueueDecl();
+    });
+    assertThat(e.getMessage(), containsString("Expected ORDERED BY <macro-token>"));
+  }
+
   @Test
   public void testQueueDeclarationMissingBody() {
     String script = "QUEUE my_queue";
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class RateLimiterTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final AtomicLong clock = new AtomicLong();
+
+  @Test
+  public void testBurst() {
+    RateLimiter limiter = new RateLimiter(new RateLimit(2, TimeUnit.SECONDS, null), clock::get);
+    assertEquals(0, limiter.reserve());
+    assertEquals(0, limiter.reserve());
+    // the bucket is empty, requests are delayed instead of dropped
+    assertEquals(SECOND / 2, limiter.reserve());
+    assertEquals(SECOND, limiter.reserve());
+  }
+
+  @Test
+  public void testRefill() {
+    RateLimiter limiter = new RateLimiter(new RateLimit(2, TimeUnit.SECONDS, null), clock::get);
+    limiter.reserve();
+    limiter.reserve();
+    clock.addAndGet(SECOND / 2);
+    assertEquals(0, limiter.reserve());
+    assertEquals(SECOND / 2, limiter.reserve());
+    // the bucket does not hold more than one second worth of permits
+    clock.addAndGet(10 * SECOND);
+    assertEquals(0, limiter.reserve());
+    assertEquals(0, limiter.reserve());
+    assertEquals(SECOND / 2, limiter.reserve());
+  }
+
+  @Test
+  public void testRestrict() {
+    RateLimiter limiter = new RateLimiter(new RateLimit(4, TimeUnit.SECONDS, null), clock::get);
+    limiter.restrict(new RateLimit(2, TimeUnit.SECONDS, null));
+    limiter.restrict(new RateLimit(8, TimeUnit.SECONDS, null));
+    assertEquals(0, limiter.reserve());
+    assertEquals(0, limiter.reserve());
+    assertEquals(SECOND / 2, limiter.reserve());
+  }
+
+  @Test
+  public void testSharedByHost() {
+    // the rate is not part of the key
+    RateLimiter limiter = RateLimiter.get(new RateLimit(10, TimeUnit.SECONDS, null),
+        URI.create("https://Shared.example.com/a"));
+    assertSame(limiter, RateLimiter.get(new RateLimit(5, TimeUnit.SECONDS, null),
+        URI.create("https://shared.example.com/b")));
+    assertSame(limiter, RateLimiter.get(new RateLimit(5, TimeUnit.SECONDS, "shared.example.com"),
+        URI.create("https://other.example.com/")));
+    assertNotSame(limiter, RateLimiter.get(new RateLimit(5, TimeUnit.SECONDS, null),
+        URI.create("https://other.example.com/")));
+    assertNotNull(RateLimiter.get(new RateLimit(5, TimeUnit.SECONDS, null),
+        URI.create("file:///tmp")));
+  }
+
+}
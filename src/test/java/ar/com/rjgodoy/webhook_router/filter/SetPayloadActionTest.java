@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2024-2025 Roberto Javier Godoy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ar.com.rjgodoy.webhook_router.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import ar.com.rjgodoy.webhook_router.WebHook;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class SetPayloadActionTest {
+
+  @Test
+  public void testSetNested() {
+    WebHook w = new WebHook("", List.of(), new JSONObject("{\"a\":{\"b\":{}}}"), null, null);
+    assertEquals(Result.NULL,
+        new SetPayloadAction(0, "$a.b.c", "string", new MacroString("x")).apply(w));
+    assertEquals("x", w.getPayload().getJSONObject("a").getJSONObject("b").get("c"));
+  }
+
+  @Test
+  public void testSetNestedNotAnObject() {
+    WebHook w = new WebHook("", List.of(), new JSONObject("{\"a\":1}"), null, null);
+    assertEquals(Result.FALSE,
+        new SetPayloadAction(0, "$a.b", "string", new MacroString("x")).apply(w));
+  }
+
+}